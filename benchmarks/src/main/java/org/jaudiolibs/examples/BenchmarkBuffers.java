@@ -0,0 +1,43 @@
+package org.jaudiolibs.examples;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Buffer lists for calling AudioClient.process() directly.
+ */
+final class BenchmarkBuffers {
+
+    /**
+     * Number of frames processed per benchmark invocation. Benchmarks process
+     * FRAMES / bufferSize periods per invocation and declare FRAMES operations,
+     * so scores are per frame whatever the buffer size. Multiply the GC
+     * profiler's gc.alloc.rate.norm by the buffer size for bytes allocated per
+     * process() call.
+     */
+    final static int FRAMES = 4096;
+
+    private BenchmarkBuffers() {
+    }
+
+    static List<FloatBuffer> create(int channels, int bufferSize) {
+        List<FloatBuffer> list = new ArrayList<FloatBuffer>(channels);
+        for (int i = 0; i < channels; i++) {
+            FloatBuffer buffer = FloatBuffer.allocate(bufferSize);
+            for (int f = 0; f < bufferSize; f++) {
+                buffer.put(f, (float) Math.sin(f * 0.01));
+            }
+            list.add(buffer);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    static void clear(List<FloatBuffer> buffers) {
+        for (int i = 0, count = buffers.size(); i < count; i++) {
+            buffers.get(i).clear();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.jaudiolibs.examples;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A soft clip waveshaper applied per sample through a DoubleUnaryOperator, as
+ * Graph.fn() does, compared with the same shaper as a {@link BlockFn} block
+ * function. Scores are per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockFnBenchmark {
+
+    @Param({"32", "256", "4096"})
+    int bufferSize;
+
+    private float[] source;
+    private float[] buffer;
+    private int periods;
+    private DoubleUnaryOperator perSample;
+    private BlockFn block;
+
+    @Setup
+    public void setup() {
+        source = new float[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            source[i] = (float) Math.sin(i * 0.01);
+        }
+        buffer = new float[bufferSize];
+        periods = Math.max(1, BenchmarkBuffers.FRAMES / bufferSize);
+        perSample = d -> {
+            double x = d * 4;
+            return x / (1 + Math.abs(x));
+        };
+        block = BlockFn.of((b, length) -> {
+            for (int i = 0; i < length; i++) {
+                float x = b[i] * 4;
+                b[i] = x / (1 + Math.abs(x));
+            }
+        });
+    }
+
+    private void fill() {
+        System.arraycopy(source, 0, buffer, 0, bufferSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkBuffers.FRAMES)
+    public float[] perSample() {
+        for (int p = 0; p < periods; p++) {
+            fill();
+            for (int i = 0; i < bufferSize; i++) {
+                buffer[i] = (float) perSample.applyAsDouble(buffer[i]);
+            }
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkBuffers.FRAMES)
+    public float[] block() {
+        for (int p = 0; p < periods; p++) {
+            fill();
+            block.processBlock(buffer, bufferSize, 48000);
+        }
+        return buffer;
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.jaudiolibs.examples;
+
+import java.util.concurrent.TimeUnit;
+import org.jaudiolibs.pipes.graph.Graph;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Graph examples per frame, across buffer sizes. The Graph is built through
+ * GraphPlayer against the offline server, and periods are stepped from the
+ * benchmark thread using an {@link OfflineAudioServer.Driver}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Param({"32", "64", "128", "256", "512", "1024", "2048", "4096"})
+    int bufferSize;
+
+    @Param({"SimpleGraph", "SimpleGraphNoAnnotations"})
+    String graph;
+
+    private OfflineAudioServer.Driver driver;
+    private int periods;
+
+    @Setup
+    public void setup() throws Exception {
+        Graph g = "SimpleGraph".equals(graph)
+                ? new SimpleGraph() : new SimpleGraphNoAnnotations();
+        driver = new OfflineAudioServer.Driver();
+        GraphPlayer.create(g)
+                .library(OfflineAudioServerProvider.LIBRARY_NAME)
+                .bufferSize(bufferSize)
+                .ext(driver)
+                .build()
+                .start();
+        if (!driver.awaitReady(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Offline server failed to start");
+        }
+        periods = Math.max(1, BenchmarkBuffers.FRAMES / bufferSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkBuffers.FRAMES)
+    public boolean period() throws Exception {
+        boolean ok = true;
+        for (int i = 0; i < periods; i++) {
+            ok &= driver.step();
+        }
+        return ok;
+    }
+
+    @TearDown
+    public void tearDown() {
+        driver.shutdown();
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.jaudiolibs.examples;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One MidiThru process cycle against a stub MIDI source, across event
+ * densities, passing events unchanged or through a filtering and transforming
+ * route. Scores are per cycle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MidiThruBenchmark {
+
+    @Param({"32", "256", "4096"})
+    int bufferSize;
+
+    @Param({"1", "16", "128"})
+    int events;
+
+    @Param({"thru", "transform"})
+    String routing;
+
+    private MidiThru thru;
+
+    @Setup
+    public void setup() {
+        MidiRouting table;
+        if ("transform".equals(routing)) {
+            table = MidiRouting.builder(1, 2)
+                    .route(0, 0).transpose(12).velocityCurve(0.5).remapController(1, 74).add()
+                    .route(0, 1).channels(1, 2)
+                    .types(MidiRouting.NOTE_ON | MidiRouting.NOTE_OFF).transpose(-12).add()
+                    .build();
+        } else {
+            table = MidiRouting.thru(1, 2);
+        }
+        thru = new MidiThru(new StubPorts(events, bufferSize), table);
+    }
+
+    @Benchmark
+    public void process() throws Exception {
+        thru.processEvents(bufferSize);
+        // debug output is consumed by the main thread in MidiThru, clearing
+        // is two atomic accesses so is included rather than a per-invocation
+        // teardown, which would distort timing this short
+        thru.clearDebug();
+    }
+
+    /**
+     * One input of alternating note and controller messages spread across the
+     * period, and two outputs. Output is discarded.
+     */
+    private static class StubPorts implements MidiThru.Ports {
+
+        private final byte[][] data;
+        private final int[] times;
+        private int current;
+
+        private StubPorts(int count, int bufferSize) {
+            data = new byte[count][];
+            times = new int[count];
+            for (int i = 0; i < count; i++) {
+                if (i % 2 == 0) {
+                    data[i] = new byte[]{(byte) 0x90, (byte) (36 + i % 48), (byte) 100};
+                } else {
+                    data[i] = new byte[]{(byte) 0xB0, (byte) 1, (byte) (i % 128)};
+                }
+                times[i] = (int) ((long) i * bufferSize / count);
+            }
+        }
+
+        @Override
+        public int getInputCount() {
+            return 1;
+        }
+
+        @Override
+        public int getOutputCount() {
+            return 2;
+        }
+
+        @Override
+        public void clearOutputs() {
+        }
+
+        @Override
+        public int getEventCount(int input) {
+            return data.length;
+        }
+
+        @Override
+        public void loadEvent(int input, int index) {
+            current = index;
+        }
+
+        @Override
+        public int eventTime(int input) {
+            return times[current];
+        }
+
+        @Override
+        public int eventSize(int input) {
+            return data[current].length;
+        }
+
+        @Override
+        public void readEvent(int input, byte[] buffer) {
+            byte[] event = data[current];
+            System.arraycopy(event, 0, buffer, 0, event.length);
+        }
+
+        @Override
+        public void writeEvent(int output, int time, byte[] buffer, int size) {
+        }
+
+    }
+
+}
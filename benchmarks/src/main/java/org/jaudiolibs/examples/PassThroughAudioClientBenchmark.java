@@ -0,0 +1,81 @@
+package org.jaudiolibs.examples;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PassThroughAudioClient.process() per frame, across buffer sizes and channel
+ * counts, for straight pass through and for every output mixing all inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PassThroughAudioClientBenchmark {
+
+    @Param({"32", "64", "128", "256", "512", "1024", "2048", "4096"})
+    int bufferSize;
+
+    @Param({"1", "2", "8", "32", "64"})
+    int channels;
+
+    @Param({"identity", "mix"})
+    String routing;
+
+    private PassThroughAudioClient client;
+    private List<FloatBuffer> inputs;
+    private List<FloatBuffer> outputs;
+    private int periods;
+
+    @Setup
+    public void setup() throws Exception {
+        RoutingMatrix matrix = RoutingMatrix.identity(channels, channels);
+        if ("mix".equals(routing)) {
+            for (int o = 0; o < channels; o++) {
+                for (int i = 0; i < channels; i++) {
+                    matrix = matrix.withGain(i, o, 1f / channels);
+                }
+            }
+        }
+        client = new PassThroughAudioClient(matrix);
+        client.configure(new AudioConfiguration(48000, channels, channels, bufferSize));
+        inputs = BenchmarkBuffers.create(channels, bufferSize);
+        outputs = BenchmarkBuffers.create(channels, bufferSize);
+        periods = Math.max(1, BenchmarkBuffers.FRAMES / bufferSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkBuffers.FRAMES)
+    public boolean process() {
+        boolean ok = true;
+        for (int i = 0; i < periods; i++) {
+            BenchmarkBuffers.clear(inputs);
+            BenchmarkBuffers.clear(outputs);
+            ok &= client.process(i, inputs, outputs, bufferSize);
+        }
+        return ok;
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.shutdown();
+    }
+
+}
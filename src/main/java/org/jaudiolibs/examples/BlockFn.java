@@ -0,0 +1,146 @@
+package org.jaudiolibs.examples;
+
+/**
+ * A block-oriented alternative to Graph.fn(), for use in Pipes Graphs.
+ *
+ * Graph.fn() calls its function once per sample through a
+ * DoubleUnaryOperator. BlockFn instead passes the whole period to a
+ * {@link BlockProcessor} as a float[], so the function body is a plain counted
+ * loop over an array, with no per-sample dispatch, that the JIT can unroll and
+ * auto-vectorise. Keep the loop body free of calls and branches for best
+ * results.
+ *
+ * <pre>{@code
+ * link(in(0), BlockFn.of((buffer, length) -> {
+ *     for (int i = 0; i < length; i++) {
+ *         float x = buffer[i] * 4;
+ *         buffer[i] = x / (1 + Math.abs(x));
+ *     }
+ * }), out(0));
+ * }</pre>
+ *
+ * As with fn(), if no source is connected the block starts as silence.
+ *
+ * The function is prepared on the audio thread in the first period, and again
+ * if the sample rate or a larger block size is seen, which may allocate. Call
+ * {@link #prepare(float, int)} from Graph.init() to do this up front.
+ */
+public final class BlockFn extends BlockPipe {
+
+    private final BlockProcessor function;
+
+    private float preparedRate;
+    private int preparedSize;
+
+    /**
+     * Create a BlockFn processing blocks with the given function.
+     *
+     * @param function block function
+     */
+    public BlockFn(BlockProcessor function) {
+        if (function == null) {
+            throw new NullPointerException();
+        }
+        this.function = function;
+    }
+
+    /**
+     * Prepare the function for the given sample rate and maximum block size.
+     * Call before the Pipe is first pulled, eg. from Graph.init() with
+     * sampleRate() and blockSize().
+     *
+     * @param sampleRate sample rate
+     * @param maxBufferSize maximum block size
+     * @return this
+     */
+    public BlockFn prepare(float sampleRate, int maxBufferSize) {
+        prepareFunction(sampleRate, maxBufferSize);
+        return this;
+    }
+
+    @Override
+    void processBlock(float[] data, int size, float sampleRate) {
+        if (size > preparedSize || sampleRate != preparedRate) {
+            prepareFunction(sampleRate, size);
+        }
+        function.process(data, size);
+    }
+
+    private void prepareFunction(float sampleRate, int size) {
+        preparedSize = Math.max(size, preparedSize);
+        preparedRate = sampleRate;
+        function.prepare(sampleRate, preparedSize);
+    }
+
+    /**
+     * Create a BlockFn for a float block function.
+     *
+     * @param function block function
+     * @return BlockFn
+     */
+    public static BlockFn of(BlockProcessor function) {
+        return new BlockFn(function);
+    }
+
+    /**
+     * Create a BlockFn for a function working in double precision. The block
+     * is converted to and from a preallocated double[] around each call.
+     *
+     * @param function double block function
+     * @return BlockFn
+     */
+    public static BlockFn ofDouble(DoubleBlockProcessor function) {
+        if (function == null) {
+            throw new NullPointerException();
+        }
+        return new BlockFn(new DoubleAdaptor(function));
+    }
+
+    /**
+     * A block function working in double precision.
+     */
+    @FunctionalInterface
+    public static interface DoubleBlockProcessor {
+
+        /**
+         * Process the block in place.
+         *
+         * @param buffer samples
+         * @param length number of samples to process, from index 0
+         */
+        void process(double[] buffer, int length);
+
+    }
+
+    private static class DoubleAdaptor implements BlockProcessor {
+
+        private final DoubleBlockProcessor function;
+        private double[] scratch;
+
+        private DoubleAdaptor(DoubleBlockProcessor function) {
+            this.function = function;
+            this.scratch = new double[0];
+        }
+
+        @Override
+        public void prepare(float sampleRate, int maxBufferSize) {
+            if (scratch.length < maxBufferSize) {
+                scratch = new double[maxBufferSize];
+            }
+        }
+
+        @Override
+        public void process(float[] buffer, int length) {
+            double[] d = scratch;
+            for (int i = 0; i < length; i++) {
+                d[i] = buffer[i];
+            }
+            function.process(d, length);
+            for (int i = 0; i < length; i++) {
+                buffer[i] = (float) d[i];
+            }
+        }
+
+    }
+
+}
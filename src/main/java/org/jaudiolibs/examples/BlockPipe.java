@@ -0,0 +1,43 @@
+package org.jaudiolibs.examples;
+
+import java.util.List;
+import org.jaudiolibs.pipes.Buffer;
+import org.jaudiolibs.pipes.Pipe;
+
+/**
+ * Base for single input Pipes that process the whole block in place.
+ *
+ * If no source is connected the block starts as silence, so subclasses can
+ * act as generators or processors.
+ */
+abstract class BlockPipe extends Pipe {
+
+    BlockPipe() {
+        super(1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected void process(List<Buffer> buffers) {
+        if (buffers.isEmpty()) {
+            return;
+        }
+        Buffer buffer = buffers.get(0);
+        processBlock(buffer.getData(), buffer.getSize(), buffer.getSampleRate());
+    }
+
+    @Override
+    protected void writeOutput(List<Buffer> inputs, Buffer output, int sinkIndex) {
+        Buffer input = inputs.get(0);
+        System.arraycopy(input.getData(), 0, output.getData(), 0, output.getSize());
+    }
+
+    /**
+     * Process the block in place.
+     *
+     * @param data sample data
+     * @param size number of samples in block
+     * @param sampleRate sample rate
+     */
+    abstract void processBlock(float[] data, int size, float sampleRate);
+
+}
@@ -0,0 +1,29 @@
+package org.jaudiolibs.examples;
+
+/**
+ * A stage of DSP that processes a whole block of samples in place.
+ *
+ * Implementations should not allocate in {@link #process(float[], int)}.
+ */
+@FunctionalInterface
+public interface BlockProcessor {
+
+    /**
+     * Process the block in place.
+     *
+     * @param buffer samples
+     * @param length number of samples to process, from index 0
+     */
+    void process(float[] buffer, int length);
+
+    /**
+     * Called before the first block, and whenever the sample rate or maximum
+     * block size changes. May allocate.
+     *
+     * @param sampleRate sample rate
+     * @param maxBufferSize maximum length that will be passed to process
+     */
+    default void prepare(float sampleRate, int maxBufferSize) {
+    }
+
+}
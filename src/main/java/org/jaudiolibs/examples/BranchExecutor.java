@@ -0,0 +1,157 @@
+package org.jaudiolibs.examples;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pool of worker threads that run the {@link ParallelBranch}es of a Graph
+ * concurrently within each period.
+ *
+ * The first branch pulled by the audio thread in a period schedules every
+ * registered branch. Workers and the audio thread then claim branches until
+ * all are done, and each branch waits for its own result before passing it
+ * on, which gives a per-period barrier before the branches are merged.
+ *
+ * A new period is detected when a branch is pulled again after already
+ * passing on the current generation's result, as a Pipe is only pulled once
+ * per period.
+ *
+ * Java has no portable way to pin threads to cores. Instead the workers are
+ * dedicated maximum priority threads that spin for up to {@link #SPIN_NANOS}
+ * after running their branches, so they are usually awake if the graph is
+ * busy, and then park until the next period.
+ */
+public final class BranchExecutor {
+
+    /**
+     * Time workers spin waiting for more work before parking.
+     */
+    public final static long SPIN_NANOS = 50000;
+
+    private final Worker[] workers;
+
+    private volatile ParallelBranch[] branches;
+    private volatile long generation;
+    private volatile boolean closed;
+
+    /**
+     * Create an executor with one worker per available processor, less one for
+     * the audio thread.
+     */
+    public BranchExecutor() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Create an executor with the given number of worker threads.
+     *
+     * @param threads worker count
+     */
+    public BranchExecutor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one worker");
+        }
+        branches = new ParallelBranch[0];
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+            workers[i].start();
+        }
+    }
+
+    synchronized void register(ParallelBranch branch) {
+        ParallelBranch[] b = Arrays.copyOf(branches, branches.length + 1);
+        b[b.length - 1] = branch;
+        branches = b;
+    }
+
+    /**
+     * Called by a branch on the audio thread each period. Schedules all
+     * branches if the branch has already passed on the current generation,
+     * which means a new period has started.
+     *
+     * @param consumed last generation the branch passed on
+     * @param size block size
+     * @param sampleRate sample rate
+     * @return generation to wait for
+     */
+    long beginPeriod(long consumed, int size, float sampleRate) {
+        if (consumed >= generation) {
+            long gen = generation + 1;
+            for (ParallelBranch branch : branches) {
+                branch.schedule(gen, size, sampleRate);
+            }
+            generation = gen;
+            for (Worker worker : workers) {
+                if (worker.parked) {
+                    LockSupport.unpark(worker);
+                }
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Run one pending branch, if any.
+     *
+     * @return true if a branch was run
+     */
+    boolean helpOne() {
+        for (ParallelBranch branch : branches) {
+            if (branch.tryRun()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stop the worker threads. Branches using this executor will carry on
+     * working, but only on the audio thread.
+     */
+    public void close() {
+        closed = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private class Worker extends Thread {
+
+        private volatile boolean parked;
+
+        private Worker(int index) {
+            super("BranchExecutor worker " + index);
+            setDaemon(true);
+            setPriority(Thread.MAX_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+            long seen = 0;
+            while (!closed) {
+                long gen = generation;
+                if (gen != seen) {
+                    seen = gen;
+                    while (helpOne()) {
+                        // keep claiming until nothing is pending
+                    }
+                    continue;
+                }
+                long spinEnd = System.nanoTime() + SPIN_NANOS;
+                while (generation == seen && !closed && System.nanoTime() < spinEnd) {
+                    // spin briefly in case more work arrives
+                }
+                if (generation == seen && !closed) {
+                    parked = true;
+                    if (generation == seen && !closed) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+    }
+
+}
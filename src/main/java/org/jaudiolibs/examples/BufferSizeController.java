@@ -0,0 +1,441 @@
+package org.jaudiolibs.examples;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.audioservers.ext.ClientID;
+import org.jaudiolibs.audioservers.ext.Connections;
+
+/**
+ * Runs a client on an AudioServer and adapts the buffer size to the host,
+ * settling on the smallest buffer that keeps process() within a safety margin
+ * of the period.
+ *
+ * The client is wrapped in a {@link ProcessMonitor}, and every
+ * {@link #WINDOW_MILLIS} the monitor is checked. If any periods were missed,
+ * or the 99th percentile of process() time is over the margin, the buffer
+ * size is doubled. If the longest process() time would fit within the margin
+ * of half the period, the buffer size is halved. A size that has failed is
+ * never tried again, so the controller settles rather than oscillating.
+ *
+ * The buffer size is part of the AudioConfiguration, so a change means
+ * shutting down the server and creating a new one. Most devices can't be
+ * opened twice, so rather than running two servers at once the output is
+ * faded out over {@link #FADE_MILLIS}, the server replaced, and the new
+ * server's output faded in. As with any server, the client is shut down when
+ * each server stops and configured again for the next, so clients that start
+ * threads or open files in configure() release them in between. The monitor
+ * itself is kept across servers, so a JMX registration of
+ * {@link #getMonitor()} lasts until the controller stops.
+ *
+ * Servers may not honour the requested buffer size - a JACK server has its
+ * own - in which case the controller stops trying to change it.
+ */
+public class BufferSizeController {
+
+    public static void main(String[] args) throws Exception {
+
+        String lib = "JavaSound"; // or "JACK";
+
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
+
+        AudioConfiguration config = new AudioConfiguration(
+                44100.0f, //sample rate
+                0, // input channels
+                2, // output channels
+                256, //buffer size to start with
+                // extensions
+                new ClientID("BufferSize"),
+                Connections.OUTPUT);
+
+        BufferSizeController controller = new BufferSizeController(provider, config,
+                new SineAudioClient());
+        controller.start();
+
+        // you'll have to kill the program manually!
+        while (true) {
+            Thread.sleep(WINDOW_MILLIS);
+            System.out.println(controller);
+        }
+
+    }
+
+    /**
+     * Length of each measurement window.
+     */
+    public final static long WINDOW_MILLIS = 2000;
+
+    /**
+     * Time ignored after each server start, while the device settles.
+     */
+    public final static long SETTLE_MILLIS = 500;
+
+    /**
+     * Length of the fades either side of a buffer size change.
+     */
+    public final static long FADE_MILLIS = 10;
+
+    private final static double DEFAULT_MARGIN = 0.5;
+    private final static int DEFAULT_MIN = 32;
+    private final static int DEFAULT_MAX = 4096;
+    private final static long START_TIMEOUT = 5000;
+
+    private final static Logger LOG = Logger.getLogger(BufferSizeController.class.getName());
+
+    private final AudioServerProvider provider;
+    private final AudioConfiguration config;
+    private final AudioClient client;
+    private final ProcessMonitor monitor;
+    private final double margin;
+    private final int minSize;
+    private final int maxSize;
+
+    private volatile Session session;
+    private volatile boolean stopped;
+    private volatile int restarts;
+    private volatile int failedSize;
+    private volatile boolean fixed;
+    private Thread thread;
+
+    /**
+     * Create a controller with a margin of 50% of the period, and buffer sizes
+     * from 32 to 4096.
+     *
+     * @param provider server provider
+     * @param config configuration, with the buffer size to start with
+     * @param client client
+     */
+    public BufferSizeController(AudioServerProvider provider, AudioConfiguration config,
+            AudioClient client) {
+        this(provider, config, client, DEFAULT_MARGIN, DEFAULT_MIN, DEFAULT_MAX);
+    }
+
+    /**
+     * Create a controller.
+     *
+     * @param provider server provider
+     * @param config configuration, with the buffer size to start with
+     * @param client client
+     * @param margin fraction of the period process() must stay within
+     * @param minSize smallest buffer size
+     * @param maxSize largest buffer size
+     */
+    public BufferSizeController(AudioServerProvider provider, AudioConfiguration config,
+            AudioClient client, double margin, int minSize, int maxSize) {
+        if (provider == null || config == null || client == null) {
+            throw new NullPointerException();
+        }
+        if (!(margin > 0 && margin <= 1)) {
+            throw new IllegalArgumentException("Invalid margin : " + margin);
+        }
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid buffer size range : " + minSize + " to " + maxSize);
+        }
+        this.provider = provider;
+        this.config = config;
+        this.client = client;
+        this.monitor = new ProcessMonitor(client, margin);
+        this.margin = margin;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Start the server and the controller thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        thread = new Thread(this::control, "Buffer size controller");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Fade out and stop the server, and shut down the client.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        stopped = true;
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            t.interrupt();
+            t.join();
+        }
+    }
+
+    /**
+     * The monitor measuring the client, reset at the start of each window. It
+     * may be registered with JMX, and stays registered while servers are
+     * replaced, until the controller stops.
+     *
+     * @return monitor
+     */
+    public ProcessMonitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Buffer size of the running server.
+     *
+     * @return buffer size, or zero if not running
+     */
+    public int getBufferSize() {
+        Session s = session;
+        return s == null ? 0 : s.stage.bufferSize;
+    }
+
+    /**
+     * Number of times the server has been replaced with a new buffer size.
+     *
+     * @return restarts
+     */
+    public int getRestarts() {
+        return restarts;
+    }
+
+    private void control() {
+        Session current = open(config.getMaxBufferSize());
+        if (current == null) {
+            LOG.log(Level.SEVERE, "Unable to start server");
+            monitor.unregister();
+            return;
+        }
+        session = current;
+        try {
+            while (!stopped) {
+                Thread.sleep(SETTLE_MILLIS);
+                monitor.reset();
+                Thread.sleep(WINDOW_MILLIS);
+                if (current.stage.finished) {
+                    // client returned false, server has shut down
+                    return;
+                }
+                int size = current.stage.bufferSize;
+                int next = evaluate(size);
+                if (next != size) {
+                    Session replacement = replace(current, next);
+                    if (replacement == null) {
+                        return;
+                    }
+                    current = replacement;
+                    session = current;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // stopped
+        } finally {
+            close(current);
+            session = null;
+            monitor.unregister();
+        }
+    }
+
+    private int evaluate(int size) {
+        long period = monitor.getPeriodNanos();
+        if (period == 0 || fixed) {
+            return size;
+        }
+        long missed = monitor.getMissedPeriods();
+        long load = monitor.percentile(99);
+        if (missed > 0 || load > period * margin) {
+            if (size > failedSize) {
+                failedSize = size;
+            }
+            int next = Math.min(maxSize, size * 2);
+            if (next != size) {
+                LOG.log(Level.INFO, "Increasing buffer size from {0} to {1} : {2} missed, 99% {3}us of {4}us",
+                        new Object[]{size, next, missed, load / 1000, period / 1000});
+            }
+            return next;
+        }
+        int next = Math.max(minSize, size / 2);
+        // the longest call must fit the smaller period, as jitter doesn't scale
+        if (next != size && next > failedSize && monitor.getMaxNanos() < period / 2 * margin) {
+            LOG.log(Level.INFO, "Reducing buffer size from {0} to {1}", new Object[]{size, next});
+            return next;
+        }
+        return size;
+    }
+
+    private Session replace(Session current, int size) throws InterruptedException {
+        close(current);
+        Session next = open(size);
+        if (next == null) {
+            // not supported, don't try again, and go back to the size that worked
+            failedSize = Math.max(failedSize, size);
+            LOG.log(Level.WARNING, "Unable to start server with buffer size {0}", size);
+            next = open(current.stage.bufferSize);
+            if (next == null) {
+                LOG.log(Level.SEVERE, "Unable to restart server");
+                return null;
+            }
+        } else if (next.stage.bufferSize != size) {
+            // server chose its own buffer size, so stop adjusting
+            LOG.log(Level.INFO, "Server buffer size is fixed at {0}", next.stage.bufferSize);
+            fixed = true;
+        }
+        restarts++;
+        return next;
+    }
+
+    private Session open(int size) {
+        List<Object> exts = new ArrayList<>();
+        for (Object ext : config.findAll(Object.class)) {
+            exts.add(ext);
+        }
+        AudioConfiguration cfg = new AudioConfiguration(config.getSampleRate(),
+                config.getInputChannelCount(), config.getOutputChannelCount(),
+                size, exts.toArray());
+        Stage stage = new Stage();
+        AudioServer server;
+        try {
+            server = provider.createServer(cfg, stage);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, null, ex);
+            return null;
+        }
+        Thread runner = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.run();
+                } catch (Exception ex) {
+                    LOG.log(Level.SEVERE, null, ex);
+                } finally {
+                    stage.started.countDown();
+                }
+            }
+        });
+        runner.setPriority(Thread.MAX_PRIORITY);
+        runner.start();
+        try {
+            if (!stage.started.await(START_TIMEOUT, TimeUnit.MILLISECONDS)
+                    || stage.bufferSize == 0 || !runner.isAlive()) {
+                server.shutdown();
+                runner.join(START_TIMEOUT);
+                return null;
+            }
+        } catch (InterruptedException ex) {
+            server.shutdown();
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return new Session(server, runner, stage);
+    }
+
+    private void close(Session s) {
+        s.stage.fadeOut = true;
+        try {
+            // if the server has stopped the fade never completes
+            s.stage.faded.await(FADE_MILLIS * 10 + 100, TimeUnit.MILLISECONDS);
+            s.server.shutdown();
+            s.runner.join(START_TIMEOUT);
+        } catch (InterruptedException ex) {
+            s.server.shutdown();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("buffer size %d, %d restarts, %s", getBufferSize(), restarts, monitor);
+    }
+
+    private static class Session {
+
+        private final AudioServer server;
+        private final Thread runner;
+        private final Stage stage;
+
+        private Session(AudioServer server, Thread runner, Stage stage) {
+            this.server = server;
+            this.runner = runner;
+            this.stage = stage;
+        }
+
+    }
+
+    /**
+     * Client for one server, fading the monitored client in and out.
+     */
+    private class Stage implements AudioClient {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch faded = new CountDownLatch(1);
+
+        private volatile int bufferSize;
+        private volatile boolean fadeOut;
+        private volatile boolean finished;
+        private boolean configured;
+        private float gain;
+        private float step;
+        private boolean silent;
+
+        public synchronized void configure(AudioConfiguration context) throws Exception {
+            monitor.configure(context);
+            configured = true;
+            gain = 0;
+            step = (float) (1 / Math.max(1, context.getSampleRate() * FADE_MILLIS / 1000.0));
+            bufferSize = context.getMaxBufferSize();
+            started.countDown();
+        }
+
+        public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
+            if (silent) {
+                // faded out, waiting for the server to stop
+                for (FloatBuffer output : outputs) {
+                    for (int i = 0; i < nframes; i++) {
+                        output.put(i, 0);
+                    }
+                }
+                return true;
+            }
+            if (!monitor.process(time, inputs, outputs, nframes)) {
+                finished = true;
+                return false;
+            }
+            boolean out = fadeOut;
+            if (gain == 1 && !out) {
+                return true;
+            }
+            float g = gain;
+            for (int i = 0; i < nframes; i++) {
+                g = out ? Math.max(0, g - step) : Math.min(1, g + step);
+                for (FloatBuffer output : outputs) {
+                    output.put(i, output.get(i) * g);
+                }
+            }
+            gain = g;
+            if (out && g == 0) {
+                silent = true;
+                faded.countDown();
+            }
+            return true;
+        }
+
+        public synchronized void shutdown() {
+            faded.countDown();
+            // once per server, and only if the client was configured for it.
+            // The monitor isn't shut down, as that would unregister it.
+            if (configured) {
+                configured = false;
+                client.shutdown();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,456 @@
+package org.jaudiolibs.examples;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.audioservers.ext.ClientID;
+import org.jaudiolibs.audioservers.ext.Connections;
+
+/**
+ * An AudioClient that hosts any number of child clients under one
+ * AudioServer, so they share one device callback and one audio thread.
+ *
+ * Each child is added with a range of the host's input and output channels.
+ * Children read their inputs through views of the server's buffers, without
+ * copying. Output channels that only one child writes to are given to it as
+ * views of the server's output buffers directly. Outputs shared between
+ * children are rendered into buffers allocated on configure and summed, so a
+ * child may have a mix of both.
+ *
+ * With worker threads, children are processed in parallel within the period.
+ * The audio thread and workers claim children from a shared counter, and the
+ * audio thread waits for all of them to finish before summing. As in
+ * {@link BranchExecutor}, workers spin for up to
+ * {@link BranchExecutor#SPIN_NANOS} after each period and then park. Children
+ * must not depend on each other. A child that returns false or throws is shut
+ * down and dropped.
+ *
+ * The main method hosts a chord of {@link SineAudioClient}s, monitored by a
+ * {@link ProcessMonitor}.
+ *
+ * Usage : ClientHost [clients] [threads]
+ */
+public class ClientHost implements AudioClient {
+
+    public static void main(String[] args) throws Exception {
+
+        String lib = "JavaSound"; // or "JACK";
+
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
+
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        /* Every sine writes to both outputs, so outputs are summed.
+         */
+        ClientHost host = new ClientHost(threads);
+        PitchTable pitches = PitchTable.standard();
+        int[] chord = PitchTable.noteNumbers("c3", "g3", "e4", "b4");
+        for (int i = 0; i < clients; i++) {
+            SineAudioClient sine = new SineAudioClient();
+            sine.setFrequency(pitches.frequency(chord[i % chord.length] + 12 * (i / chord.length)));
+            sine.setGain(0.5 / clients);
+            host.add(sine);
+        }
+        ProcessMonitor monitor = new ProcessMonitor(host);
+
+        AudioConfiguration config = new AudioConfiguration(
+                44100.0f, //sample rate
+                0, // input channels
+                2, // output channels
+                256, //buffer size
+                // extensions
+                new ClientID("Host"),
+                Connections.OUTPUT);
+
+        final AudioServer server = provider.createServer(config, monitor);
+
+        Thread runner = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.run();
+                } catch (Exception ex) {
+                    Logger.getLogger(ClientHost.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        });
+        runner.setPriority(Thread.MAX_PRIORITY);
+        runner.start();
+
+        // you'll have to kill the program manually!
+        while (true) {
+            Thread.sleep(5000);
+            System.out.println(monitor);
+        }
+
+    }
+
+    private final int threads;
+    private final List<Child> children;
+
+    private Child[] active;
+    private Worker[] workers;
+    // output channels written by more than one child, to be summed
+    private boolean[] summed;
+    private int inCount;
+    private int outCount;
+
+    // period state, published to workers by the write to next
+    private long time;
+    private int nframes;
+    private final AtomicInteger next;
+    private final AtomicInteger remaining;
+    private volatile long generation;
+    private volatile boolean closed;
+
+    /**
+     * Create a host processing children on the audio thread only.
+     */
+    public ClientHost() {
+        this(0);
+    }
+
+    /**
+     * Create a host.
+     *
+     * @param threads number of worker threads to help the audio thread, or
+     * zero to process children in turn
+     */
+    public ClientHost(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Invalid thread count : " + threads);
+        }
+        this.threads = threads;
+        this.children = new ArrayList<>();
+        this.next = new AtomicInteger();
+        this.remaining = new AtomicInteger();
+    }
+
+    /**
+     * Add a child using all of the host's input and output channels.
+     *
+     * @param client child
+     * @return this
+     */
+    public ClientHost add(AudioClient client) {
+        return add(client, 0, -1, 0, -1);
+    }
+
+    /**
+     * Add a child using a range of the host's input and output channels. Must
+     * be called before the host is configured.
+     *
+     * @param client child
+     * @param inOffset first input channel
+     * @param inCount number of input channels, or -1 for all from the offset
+     * @param outOffset first output channel
+     * @param outCount number of output channels, or -1 for all from the offset
+     * @return this
+     */
+    public synchronized ClientHost add(AudioClient client,
+            int inOffset, int inCount, int outOffset, int outCount) {
+        if (client == null) {
+            throw new NullPointerException();
+        }
+        if (active != null) {
+            throw new IllegalStateException("Host already configured");
+        }
+        if (inOffset < 0 || outOffset < 0 || inCount < -1 || outCount < -1) {
+            throw new IllegalArgumentException("Invalid channel range");
+        }
+        children.add(new Child(client, inOffset, inCount, outOffset, outCount));
+        return this;
+    }
+
+    public synchronized void configure(AudioConfiguration context) throws Exception {
+        // workers from a previous configuration must not see the new state
+        stopWorkers();
+        inCount = context.getInputChannelCount();
+        outCount = context.getOutputChannelCount();
+        int max = context.getMaxBufferSize();
+        Object[] exts = toArray(context.findAll(Object.class));
+
+        int[] writers = new int[outCount];
+        for (Child child : children) {
+            child.resolve(inCount, outCount);
+            for (int c = 0; c < child.outCount; c++) {
+                writers[child.outOffset + c]++;
+            }
+        }
+        summed = new boolean[outCount];
+        for (int c = 0; c < outCount; c++) {
+            summed[c] = writers[c] != 1;
+        }
+        for (Child child : children) {
+            child.configure(new AudioConfiguration(context.getSampleRate(),
+                    child.inCount, child.outCount, max, context.isFixedBufferSize(), exts), max);
+        }
+        active = children.toArray(new Child[children.size()]);
+
+        if (threads > 0 && active.length > 1) {
+            closed = false;
+            workers = new Worker[Math.min(threads, active.length - 1)];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Worker(i);
+                workers[i].start();
+            }
+        }
+    }
+
+    private static Object[] toArray(Iterable<Object> exts) {
+        List<Object> list = new ArrayList<>();
+        for (Object ext : exts) {
+            list.add(ext);
+        }
+        return list.toArray();
+    }
+
+    public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
+        Child[] children = active;
+        for (Child child : children) {
+            child.prepare(inputs, outputs, nframes);
+        }
+
+        if (workers == null) {
+            for (Child child : children) {
+                child.process(time, nframes);
+            }
+        } else {
+            this.time = time;
+            this.nframes = nframes;
+            remaining.set(children.length);
+            next.set(0);
+            generation++;
+            for (Worker worker : workers) {
+                if (worker.parked) {
+                    LockSupport.unpark(worker);
+                }
+            }
+            runClaimed(children);
+            while (remaining.get() > 0) {
+                // wait for the workers to finish their last child
+            }
+        }
+
+        boolean running = false;
+        for (Child child : children) {
+            running |= child.running;
+        }
+        for (int c = 0; c < outCount; c++) {
+            if (summed[c]) {
+                sum(c, children, outputs.get(c), nframes);
+            }
+        }
+        return running || children.length == 0;
+    }
+
+    private void runClaimed(Child[] children) {
+        int idx;
+        while ((idx = next.getAndIncrement()) < children.length) {
+            children[idx].process(time, nframes);
+            remaining.decrementAndGet();
+        }
+    }
+
+    private void sum(int channel, Child[] children, FloatBuffer output, int nframes) {
+        boolean first = true;
+        for (Child child : children) {
+            int c = channel - child.outOffset;
+            if (!child.running || c < 0 || c >= child.outCount) {
+                continue;
+            }
+            FloatBuffer buffer = child.outputs.get(c);
+            if (first) {
+                for (int i = 0; i < nframes; i++) {
+                    output.put(i, buffer.get(i));
+                }
+                first = false;
+            } else {
+                for (int i = 0; i < nframes; i++) {
+                    output.put(i, output.get(i) + buffer.get(i));
+                }
+            }
+        }
+        if (first) {
+            for (int i = 0; i < nframes; i++) {
+                output.put(i, 0);
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        stopWorkers();
+        if (active == null) {
+            return;
+        }
+        for (Child child : active) {
+            if (child.running) {
+                child.shutdown();
+            }
+        }
+    }
+
+    private void stopWorkers() {
+        if (workers == null) {
+            return;
+        }
+        closed = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        try {
+            for (Worker worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        workers = null;
+    }
+
+    private class Child {
+
+        private final AudioClient client;
+        private final int inOffset;
+        private final int outOffset;
+        private int inCount;
+        private int outCount;
+        // whether each output renders straight into the server's buffer
+        private boolean[] direct;
+        // views of the server inputs, and outputs to render into
+        private List<FloatBuffer> inputs;
+        private List<FloatBuffer> outputs;
+        private FloatBuffer[] inputSources;
+        private FloatBuffer[] outputSources;
+        private volatile boolean running;
+
+        private Child(AudioClient client, int inOffset, int inCount, int outOffset, int outCount) {
+            this.client = client;
+            this.inOffset = inOffset;
+            this.inCount = inCount;
+            this.outOffset = outOffset;
+            this.outCount = outCount;
+        }
+
+        private void resolve(int hostIn, int hostOut) {
+            inCount = Math.max(0, inCount < 0 ? hostIn - inOffset : Math.min(inCount, hostIn - inOffset));
+            outCount = Math.max(0, outCount < 0 ? hostOut - outOffset : Math.min(outCount, hostOut - outOffset));
+        }
+
+        private void configure(AudioConfiguration config, int max) throws Exception {
+            direct = new boolean[outCount];
+            inputs = new ArrayList<>(Arrays.asList(new FloatBuffer[inCount]));
+            outputs = new ArrayList<>(Arrays.asList(new FloatBuffer[outCount]));
+            inputSources = new FloatBuffer[inCount];
+            outputSources = new FloatBuffer[outCount];
+            for (int c = 0; c < outCount; c++) {
+                direct[c] = !summed[outOffset + c];
+                if (!direct[c]) {
+                    outputs.set(c, FloatBuffer.allocate(max));
+                }
+            }
+            client.configure(config);
+            running = true;
+        }
+
+        /*
+         * Views are only recreated if the server passes different buffers, so
+         * there is no allocation in the usual case.
+         */
+        private void prepare(List<FloatBuffer> hostInputs, List<FloatBuffer> hostOutputs, int nframes) {
+            for (int c = 0; c < inCount; c++) {
+                FloatBuffer source = hostInputs.get(inOffset + c);
+                if (source != inputSources[c]) {
+                    inputSources[c] = source;
+                    inputs.set(c, source.duplicate());
+                }
+                inputs.get(c).clear().limit(nframes);
+            }
+            for (int c = 0; c < outCount; c++) {
+                if (direct[c]) {
+                    FloatBuffer source = hostOutputs.get(outOffset + c);
+                    if (source != outputSources[c]) {
+                        outputSources[c] = source;
+                        outputs.set(c, source.duplicate());
+                    }
+                }
+                outputs.get(c).clear().limit(nframes);
+            }
+        }
+
+        private void process(long time, int nframes) {
+            if (!running) {
+                for (int c = 0; c < outCount; c++) {
+                    if (direct[c]) {
+                        FloatBuffer buffer = outputs.get(c);
+                        for (int i = 0; i < nframes; i++) {
+                            buffer.put(i, 0);
+                        }
+                    }
+                }
+                return;
+            }
+            try {
+                if (!client.process(time, inputs, outputs, nframes)) {
+                    shutdown();
+                }
+            } catch (Exception ex) {
+                Logger.getLogger(ClientHost.class.getName()).log(Level.SEVERE, null, ex);
+                shutdown();
+            }
+        }
+
+        private void shutdown() {
+            running = false;
+            client.shutdown();
+        }
+
+    }
+
+    private class Worker extends Thread {
+
+        private volatile boolean parked;
+
+        private Worker(int index) {
+            super("ClientHost worker " + index);
+            setDaemon(true);
+            setPriority(Thread.MAX_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+            long seen = generation;
+            while (!closed) {
+                long gen = generation;
+                if (gen != seen) {
+                    seen = gen;
+                    Child[] children = active;
+                    runClaimed(children);
+                    continue;
+                }
+                long spinEnd = System.nanoTime() + BranchExecutor.SPIN_NANOS;
+                while (generation == seen && !closed && System.nanoTime() < spinEnd) {
+                    // spin briefly in case more work arrives
+                }
+                if (generation == seen && !closed) {
+                    parked = true;
+                    if (generation == seen && !closed) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.jaudiolibs.examples;
+
+import java.io.IOException;
+import org.jaudiolibs.pipes.Pipe;
+import org.jaudiolibs.pipes.graph.Graph;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+import org.jaudiolibs.pipes.graph.Inject;
+import org.jaudiolibs.pipes.graph.Property;
+import org.jaudiolibs.pipes.units.IIRFilter;
+import org.jaudiolibs.pipes.units.Osc;
+import org.jaudiolibs.pipes.units.Waveform;
+
+/**
+ * A Pipes Graph controlled over OSC from a {@link ControlServer}.
+ *
+ * Each Property has an address - "/graph/frequency", "/graph/cutoff",
+ * "/graph/resonance" and "/graph/gain". The latest value received for each is
+ * set once per block in {@link #update()}, so a control surface can send as
+ * fast as it likes. Try
+ * <pre>
+ * ControlSender 9000 /graph/cutoff 2000 500
+ * </pre>
+ *
+ * Usage : ControlGraph [port]
+ */
+public class ControlGraph extends Graph {
+
+    private final static String[] ADDRESSES = {
+        "/graph/frequency", "/graph/cutoff", "/graph/resonance", "/graph/gain"
+    };
+
+    private final ControlValues controls;
+
+    @Inject Property frequency;
+    @Inject Property cutoff;
+    @Inject Property resonance;
+    @Inject Property gain;
+
+    private Property[] properties;
+
+    public ControlGraph(ControlValues controls) {
+        this.controls = controls;
+    }
+
+    @Override
+    protected void init() {
+        Osc osc = new Osc().waveform(Waveform.Saw);
+        IIRFilter filter = new IIRFilter();
+        Pipe syn = link(osc, filter, tee());
+        link(syn, out(0));
+        link(syn, out(1));
+
+        frequency.set(110).link(osc::frequency);
+        cutoff.set(800).link(filter::frequency);
+        resonance.set(4).link(filter::resonance);
+        gain.set(0.2).link(osc::gain);
+
+        // in the order of ADDRESSES
+        properties = new Property[]{frequency, cutoff, resonance, gain};
+    }
+
+    @Override
+    protected void update() {
+        int slot;
+        while ((slot = controls.poll()) >= 0) {
+            properties[slot].set(controls.value(slot));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9000;
+        ControlValues controls = new ControlValues(ADDRESSES);
+        ControlServer server = ControlServer.open(port, controls);
+        System.out.println("Listening for OSC on localhost:" + server.getPort());
+        GraphPlayer.create(new ControlGraph(controls))
+                .build()
+                .start();
+    }
+
+}
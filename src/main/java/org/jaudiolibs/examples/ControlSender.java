@@ -0,0 +1,100 @@
+package org.jaudiolibs.examples;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Sends OSC messages with a single float argument to a local
+ * {@link ControlServer}, for testing from scripts.
+ *
+ * Usage : ControlSender port address [value] [count]
+ *
+ * With a count, the message is sent that many times as fast as possible with
+ * the value ramping from 0 up to the given value, to check how a burst is
+ * coalesced.
+ */
+public final class ControlSender implements Closeable {
+
+    private final DatagramChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Open a sender to a loopback port.
+     *
+     * @param port UDP port
+     * @throws IOException if the channel cannot be opened
+     */
+    public ControlSender(int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        buffer = ByteBuffer.allocate(1024);
+    }
+
+    /**
+     * Send a message with a float argument.
+     *
+     * @param address OSC address
+     * @param value value
+     * @throws IOException on error sending
+     */
+    public void send(String address, float value) throws IOException {
+        buffer.clear();
+        putString(address);
+        putString(",f");
+        buffer.putFloat(value);
+        buffer.flip();
+        channel.write(buffer);
+    }
+
+    /**
+     * Send a message without arguments.
+     *
+     * @param address OSC address
+     * @throws IOException on error sending
+     */
+    public void send(String address) throws IOException {
+        buffer.clear();
+        putString(address);
+        putString(",");
+        buffer.flip();
+        channel.write(buffer);
+    }
+
+    private void putString(String s) {
+        buffer.put(s.getBytes(StandardCharsets.UTF_8));
+        // null terminated and padded to four bytes
+        do {
+            buffer.put((byte) 0);
+        } while ((buffer.position() & 3) != 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage : ControlSender port address [value] [count]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        try (ControlSender sender = new ControlSender(port)) {
+            if (args.length < 3) {
+                sender.send(args[1]);
+                return;
+            }
+            float value = Float.parseFloat(args[2]);
+            int count = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+            for (int i = 1; i <= count; i++) {
+                sender.send(args[1], value * i / count);
+            }
+        }
+    }
+
+}
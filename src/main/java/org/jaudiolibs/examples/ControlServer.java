@@ -0,0 +1,243 @@
+package org.jaudiolibs.examples;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A UDP control endpoint on the loopback interface, receiving OSC messages
+ * into {@link ControlValues}.
+ *
+ * Messages follow OSC 1.0 - an address matching one of the control addresses,
+ * a type tag string, and an argument of type f, i, d or h, or T or F for 1 and
+ * 0. Messages without an argument set the value 0, for triggers such as
+ * "/transport/play". Bundles are unpacked and their time tags ignored. Any
+ * further arguments are ignored.
+ *
+ * A single thread receives into one preallocated buffer and parses messages in
+ * place, so no objects are created per message. Values are coalesced by
+ * ControlValues, so the audio side sees at most one change per control per
+ * period however fast a control surface sends.
+ */
+public final class ControlServer implements Closeable {
+
+    private final static int MAX_PACKET = 65536;
+    private final static int MAX_DEPTH = 8;
+    private final static int RECEIVE_BUFFER = 1 << 20;
+
+    private final DatagramChannel channel;
+    private final ControlValues values;
+    private final ByteBuffer buffer;
+    private final Thread thread;
+    private final AtomicLong received;
+    private final AtomicLong invalid;
+
+    private volatile boolean closed;
+
+    private ControlServer(DatagramChannel channel, ControlValues values) {
+        this.channel = channel;
+        this.values = values;
+        this.buffer = ByteBuffer.allocateDirect(MAX_PACKET).order(ByteOrder.BIG_ENDIAN);
+        this.received = new AtomicLong();
+        this.invalid = new AtomicLong();
+        this.thread = new Thread(this::run, "Control server");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Open a server on a loopback port and start receiving.
+     *
+     * @param port UDP port, or 0 for any free port
+     * @param values controls to set
+     * @return server
+     * @throws IOException if the port cannot be bound
+     */
+    public static ControlServer open(int port, ControlValues values) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            // room for a burst while the receiving thread is descheduled
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER);
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        ControlServer server = new ControlServer(channel, values);
+        server.thread.start();
+        return server;
+    }
+
+    /**
+     * The bound port.
+     *
+     * @return port
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Number of messages received, including invalid messages.
+     *
+     * @return messages
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * Number of messages that could not be parsed or had an unknown address.
+     *
+     * @return invalid messages
+     */
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    /**
+     * Stop receiving and close the port.
+     *
+     * @throws IOException on error closing the channel
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                parse(0, buffer.limit(), 0);
+            } catch (ClosedChannelException ex) {
+                break;
+            } catch (RuntimeException ex) {
+                // a malformed packet must not stop the server
+                invalid.incrementAndGet();
+            } catch (IOException ex) {
+                if (!closed) {
+                    System.err.println("Control server : " + ex);
+                }
+            }
+        }
+    }
+
+    private void parse(int start, int end, int depth) {
+        if (end - start >= 16 && isBundle(start)) {
+            if (depth == MAX_DEPTH) {
+                invalid.incrementAndGet();
+                return;
+            }
+            // skip "#bundle" and the time tag
+            int pos = start + 16;
+            while (pos + 4 <= end) {
+                int size = buffer.getInt(pos);
+                pos += 4;
+                if (size < 0 || (size & 3) != 0 || size > end - pos) {
+                    invalid.incrementAndGet();
+                    return;
+                }
+                parse(pos, pos + size, depth + 1);
+                pos += size;
+            }
+        } else {
+            received.incrementAndGet();
+            if (!parseMessage(start, end)) {
+                invalid.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean isBundle(int pos) {
+        // "#bundle\0"
+        return buffer.getLong(pos) == 0x2362756e646c6500L;
+    }
+
+    private boolean parseMessage(int start, int end) {
+        int addressEnd = terminator(start, end);
+        if (addressEnd < 0 || buffer.get(start) != '/') {
+            return false;
+        }
+        int slot = values.indexOf(buffer, start, addressEnd - start);
+        if (slot < 0) {
+            return false;
+        }
+        int tags = padded(addressEnd + 1);
+        if (tags >= end) {
+            // older OSC senders may omit the type tags
+            values.set(slot, 0);
+            return true;
+        }
+        int tagsEnd = terminator(tags, end);
+        if (tagsEnd < 0 || buffer.get(tags) != ',') {
+            return false;
+        }
+        int arg = padded(tagsEnd + 1);
+        if (tagsEnd == tags + 1) {
+            values.set(slot, 0);
+            return true;
+        }
+        switch (buffer.get(tags + 1)) {
+            case 'f':
+                if (arg + 4 > end) {
+                    return false;
+                }
+                values.set(slot, buffer.getFloat(arg));
+                return true;
+            case 'i':
+                if (arg + 4 > end) {
+                    return false;
+                }
+                values.set(slot, buffer.getInt(arg));
+                return true;
+            case 'd':
+                if (arg + 8 > end) {
+                    return false;
+                }
+                values.set(slot, buffer.getDouble(arg));
+                return true;
+            case 'h':
+                if (arg + 8 > end) {
+                    return false;
+                }
+                values.set(slot, buffer.getLong(arg));
+                return true;
+            case 'T':
+                values.set(slot, 1);
+                return true;
+            case 'F':
+                values.set(slot, 0);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private int terminator(int pos, int end) {
+        for (int i = pos; i < end; i++) {
+            if (buffer.get(i) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int padded(int pos) {
+        return (pos + 3) & ~3;
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.jaudiolibs.examples;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed set of named control values, written from any thread and read once
+ * per period by a single consumer, keeping only the latest value of each.
+ *
+ * Unlike {@link ParameterQueue}, values are not queued. Setting a value stores
+ * it and marks its slot as changed, so a burst of updates to one control
+ * between periods costs the consumer a single change. The consumer calls
+ * {@link #poll()} until it returns -1 at the start of each period, reading
+ * {@link #value(int)} of each changed slot. Both sides are lock free and
+ * allocation free.
+ *
+ * Addresses are fixed on construction, and are matched against incoming
+ * messages without creating strings, see {@link ControlServer}.
+ */
+public final class ControlValues {
+
+    private final String[] addresses;
+    private final byte[][] addressBytes;
+    private final AtomicLongArray values;
+    private final AtomicLongArray dirty;
+    private final AtomicLong updates;
+    private final AtomicLong superseded;
+
+    // consumer state
+    private int word;
+    private int pendingWord;
+    private long pending;
+
+    /**
+     * Create a set of controls, with slots in the order given.
+     *
+     * @param addresses control addresses, eg. "/graph/cutoff"
+     */
+    public ControlValues(String... addresses) {
+        if (addresses.length == 0) {
+            throw new IllegalArgumentException("No addresses");
+        }
+        this.addresses = addresses.clone();
+        this.addressBytes = new byte[addresses.length][];
+        for (int i = 0; i < addresses.length; i++) {
+            if (indexOf(addresses[i]) != i) {
+                throw new IllegalArgumentException("Duplicate address : " + addresses[i]);
+            }
+            addressBytes[i] = addresses[i].getBytes(StandardCharsets.UTF_8);
+        }
+        values = new AtomicLongArray(addresses.length);
+        dirty = new AtomicLongArray((addresses.length + 63) >>> 6);
+        updates = new AtomicLong();
+        superseded = new AtomicLong();
+    }
+
+    public int size() {
+        return addresses.length;
+    }
+
+    public String address(int slot) {
+        return addresses[slot];
+    }
+
+    /**
+     * Slot of an address.
+     *
+     * @param address address
+     * @return slot, or -1 if not found
+     */
+    public int indexOf(String address) {
+        for (int i = 0; i < addresses.length; i++) {
+            if (addresses[i].equals(address)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Slot of an address held as bytes in a buffer. Does not change the
+     * buffer position.
+     *
+     * @param buffer buffer
+     * @param offset absolute index of the first byte
+     * @param length length in bytes
+     * @return slot, or -1 if not found
+     */
+    int indexOf(ByteBuffer buffer, int offset, int length) {
+        outer:
+        for (int i = 0; i < addressBytes.length; i++) {
+            byte[] bytes = addressBytes[i];
+            if (bytes.length != length) {
+                continue;
+            }
+            for (int j = length - 1; j >= 0; j--) {
+                if (bytes[j] != buffer.get(offset + j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Set the value of a slot, replacing any value not yet polled. Any thread.
+     *
+     * @param slot slot
+     * @param value value
+     */
+    public void set(int slot, double value) {
+        values.set(slot, Double.doubleToRawLongBits(value));
+        int w = slot >>> 6;
+        long mask = 1L << slot;
+        long current;
+        do {
+            current = dirty.get(w);
+            if ((current & mask) != 0) {
+                superseded.incrementAndGet();
+                break;
+            }
+        } while (!dirty.compareAndSet(w, current, current | mask));
+        updates.incrementAndGet();
+    }
+
+    /**
+     * Next changed slot since it was last polled. Consumer thread only. Call
+     * until -1 is returned to take all changes - a slot set again after it has
+     * been returned will be returned on the next round.
+     *
+     * @return slot, or -1 when no more have changed
+     */
+    public int poll() {
+        while (pending == 0) {
+            if (word == dirty.length()) {
+                word = 0;
+                return -1;
+            }
+            pending = dirty.get(word) == 0 ? 0 : dirty.getAndSet(word, 0);
+            pendingWord = word++;
+        }
+        int bit = Long.numberOfTrailingZeros(pending);
+        pending &= pending - 1;
+        return (pendingWord << 6) + bit;
+    }
+
+    /**
+     * Latest value of a slot.
+     *
+     * @param slot slot
+     * @return value
+     */
+    public double value(int slot) {
+        return Double.longBitsToDouble(values.get(slot));
+    }
+
+    /**
+     * Number of values set.
+     *
+     * @return updates
+     */
+    public long getUpdates() {
+        return updates.get();
+    }
+
+    /**
+     * Number of values replaced before the consumer polled them.
+     *
+     * @return superseded updates
+     */
+    public long getSuperseded() {
+        return superseded.get();
+    }
+
+}
@@ -0,0 +1,633 @@
+package org.jaudiolibs.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.audioservers.ext.Device;
+
+/**
+ * Discovers audio devices and the sample rates and buffer sizes they accept,
+ * probing in parallel and caching the result.
+ *
+ * The AudioServer API has no way to ask a device what it supports, so each
+ * candidate configuration is probed by starting a server with a client that
+ * records the configuration it is given. A configuration is only accepted
+ * once the client has run for {@link #PROBE_MILLIS} without a missed period,
+ * as very small buffers often start but can't keep up. A server may substitute
+ * its own values - JACK always uses the running server's - so the
+ * configurations actually given are recorded. Named devices are probed
+ * concurrently, each device's configurations in turn so it is never opened
+ * twice at once. A provider's default device is one of its named devices, so
+ * it is probed after them. The offline and resampled servers are not devices
+ * and are skipped.
+ *
+ * Probing takes a while, so results are saved to a cache file with a
+ * fingerprint of the providers and devices found. Listing devices is quick, so
+ * on later runs the fingerprint is checked and the cache used if it still
+ * matches.
+ *
+ * {@link #provider(String)} finds a provider by library name through the
+ * ServiceLoader, and is used by each example's main method.
+ * {@link #lowestLatency(List, int, int)} picks a configuration.
+ *
+ * Usage : DeviceDiscovery [cache file] [--refresh]
+ */
+public final class DeviceDiscovery {
+
+    public static void main(String[] args) throws Exception {
+        File cache = args.length > 0 && !args[0].startsWith("--")
+                ? new File(args[0]) : defaultCache();
+        boolean refresh = args.length > 0 && args[args.length - 1].equals("--refresh");
+        long start = System.nanoTime();
+        List<DeviceInfo> devices = refresh ? probe(cache) : discover(cache);
+        System.out.printf("Discovery took %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        for (DeviceInfo device : devices) {
+            System.out.println(device);
+        }
+        Selection best = lowestLatency(devices, 0, 2);
+        System.out.println("Lowest latency stereo output : " + best);
+    }
+
+    private final static float[] SAMPLE_RATES = {44100, 48000, 88200, 96000, 192000};
+    private final static int[] BUFFER_SIZES = {32, 64, 128, 256, 512, 1024, 2048};
+    /**
+     * Time a configuration must run without missing a period to be accepted.
+     */
+    public final static long PROBE_MILLIS = 500;
+
+    private final static int MIN_PROBE_PERIODS = 8;
+    private final static long PROBE_TIMEOUT = 2000 + PROBE_MILLIS;
+    private final static String DEFAULT_DEVICE = "";
+    private final static int CACHE_VERSION = 1;
+
+    private final static Logger LOG = Logger.getLogger(DeviceDiscovery.class.getName());
+
+    private DeviceDiscovery() {
+    }
+
+    /**
+     * Find a provider by library name.
+     *
+     * @param library library name, eg. "JavaSound" or "JACK"
+     * @return provider
+     * @throws NullPointerException if no provider matches, as thrown by the
+     * examples
+     */
+    public static AudioServerProvider provider(String library) {
+        for (AudioServerProvider p : ServiceLoader.load(AudioServerProvider.class)) {
+            if (library.equals(p.getLibraryName())) {
+                return p;
+            }
+        }
+        throw new NullPointerException("No AudioServer found that matches : " + library);
+    }
+
+    /**
+     * The default cache file, .jaudiolibs-devices in the user's home.
+     *
+     * @return cache file
+     */
+    public static File defaultCache() {
+        return new File(System.getProperty("user.home"), ".jaudiolibs-devices");
+    }
+
+    /**
+     * Devices and their configurations, from the cache if the devices found
+     * match its fingerprint, otherwise probed and saved to the cache.
+     *
+     * @param cache cache file
+     * @return devices
+     * @throws InterruptedException if interrupted while probing
+     */
+    public static List<DeviceInfo> discover(File cache) throws InterruptedException {
+        List<Listing> listings = list();
+        String fingerprint = fingerprint(listings);
+        List<DeviceInfo> cached = load(cache, fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        List<DeviceInfo> devices = probe(listings);
+        save(cache, fingerprint, devices);
+        return devices;
+    }
+
+    /**
+     * Probe all devices, ignoring and replacing the cache.
+     *
+     * @param cache cache file
+     * @return devices
+     * @throws InterruptedException if interrupted while probing
+     */
+    public static List<DeviceInfo> probe(File cache) throws InterruptedException {
+        List<Listing> listings = list();
+        List<DeviceInfo> devices = probe(listings);
+        save(cache, fingerprint(listings), devices);
+        return devices;
+    }
+
+    /**
+     * The configuration with the shortest period across all devices with at
+     * least the given channels, preferring the higher sample rate on a tie.
+     *
+     * @param devices devices
+     * @param minInputs minimum input channels
+     * @param minOutputs minimum output channels
+     * @return selection, or null if no device matches
+     */
+    public static Selection lowestLatency(List<DeviceInfo> devices, int minInputs, int minOutputs) {
+        Selection best = null;
+        for (DeviceInfo device : devices) {
+            if (device.inputs < minInputs || device.outputs < minOutputs) {
+                continue;
+            }
+            for (Config config : device.configs) {
+                if (best == null || config.getLatency() < best.config.getLatency()
+                        || (config.getLatency() == best.config.getLatency()
+                        && config.sampleRate > best.config.sampleRate)) {
+                    best = new Selection(device, config);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static List<Listing> list() throws InterruptedException {
+        List<AudioServerProvider> providers = new ArrayList<>();
+        for (AudioServerProvider p : ServiceLoader.load(AudioServerProvider.class)) {
+            String name = p.getLibraryName();
+            if (!OfflineAudioServerProvider.LIBRARY_NAME.equals(name)
+                    && !ResampledAudioServerProvider.LIBRARY_NAME.equals(name)) {
+                providers.add(p);
+            }
+        }
+        // some providers are slow to enumerate, so list them concurrently too
+        List<CompletableFuture<List<Listing>>> futures = new ArrayList<>();
+        for (AudioServerProvider provider : providers) {
+            futures.add(CompletableFuture.supplyAsync(() -> list(provider)));
+        }
+        List<Listing> listings = new ArrayList<>();
+        for (CompletableFuture<List<Listing>> future : futures) {
+            try {
+                listings.addAll(future.get());
+            } catch (java.util.concurrent.ExecutionException ex) {
+                LOG.log(Level.WARNING, null, ex.getCause());
+            }
+        }
+        return listings;
+    }
+
+    private static List<Listing> list(AudioServerProvider provider) {
+        List<Listing> listings = new ArrayList<>();
+        // the provider's default device, used when no Device is given
+        listings.add(new Listing(provider, null));
+        Iterable<Device> devices = provider.findAll(Device.class);
+        if (devices != null) {
+            for (Device device : devices) {
+                listings.add(new Listing(provider, device));
+            }
+        }
+        return listings;
+    }
+
+    private static String fingerprint(List<Listing> listings) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CACHE_VERSION).append(System.getProperty("os.name"));
+        for (Listing listing : listings) {
+            sb.append('|').append(listing.provider.getLibraryName())
+                    .append(':').append(listing.name())
+                    .append(':').append(listing.inputs())
+                    .append(':').append(listing.outputs());
+        }
+        // long hash of the listing, order included
+        long hash = 1125899906842597L;
+        for (int i = 0; i < sb.length(); i++) {
+            hash = 31 * hash + sb.charAt(i);
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static List<DeviceInfo> probe(List<Listing> listings) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, listings.size()));
+        try {
+            List<CompletableFuture<DeviceInfo>> futures = new ArrayList<>(listings.size());
+            for (Listing listing : listings) {
+                futures.add(listing.device == null ? null
+                        : CompletableFuture.supplyAsync(() -> probe(listing), executor));
+            }
+            // the default device is one of the named devices, so probe it after them
+            for (int i = 0; i < listings.size(); i++) {
+                Listing listing = listings.get(i);
+                if (listing.device != null) {
+                    continue;
+                }
+                List<CompletableFuture<DeviceInfo>> named = new ArrayList<>();
+                for (int j = 0; j < listings.size(); j++) {
+                    if (listings.get(j).provider == listing.provider && futures.get(j) != null) {
+                        named.add(futures.get(j));
+                    }
+                }
+                futures.set(i, CompletableFuture.allOf(named.toArray(new CompletableFuture<?>[named.size()]))
+                        .handle((v, ex) -> null)
+                        .thenApplyAsync(v -> probe(listing), executor));
+            }
+            List<DeviceInfo> devices = new ArrayList<>();
+            for (CompletableFuture<DeviceInfo> future : futures) {
+                try {
+                    devices.add(future.get());
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    LOG.log(Level.WARNING, null, ex.getCause());
+                }
+            }
+            return devices;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static DeviceInfo probe(Listing listing) {
+        List<Config> configs = new ArrayList<>();
+        int inputs = listing.inputs();
+        int outputs = listing.outputs();
+        for (float rate : SAMPLE_RATES) {
+            for (int size : BUFFER_SIZES) {
+                Config actual = probe(listing, rate, size, Math.min(inputs, 2), Math.min(outputs, 2));
+                if (actual != null && !configs.contains(actual)) {
+                    configs.add(actual);
+                }
+            }
+        }
+        Collections.sort(configs);
+        return new DeviceInfo(listing.provider.getLibraryName(), listing.name(),
+                inputs, outputs, configs);
+    }
+
+    private static Config probe(Listing listing, float sampleRate, int bufferSize,
+            int inputs, int outputs) {
+        AudioConfiguration config = listing.device == null
+                ? new AudioConfiguration(sampleRate, inputs, outputs, bufferSize)
+                : new AudioConfiguration(sampleRate, inputs, outputs, bufferSize, listing.device);
+        ProbeClient client = new ProbeClient();
+        AudioServer server;
+        try {
+            server = listing.provider.createServer(config, client);
+        } catch (Exception ex) {
+            return null;
+        }
+        Thread runner = new Thread(() -> {
+            try {
+                server.run();
+            } catch (Exception ex) {
+                // unsupported configuration
+            } finally {
+                client.done.countDown();
+            }
+        }, "Device probe");
+        runner.setDaemon(true);
+        runner.start();
+        try {
+            if (!client.done.await(PROBE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                server.shutdown();
+                client.done.await(PROBE_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            runner.join(PROBE_TIMEOUT);
+        } catch (InterruptedException ex) {
+            server.shutdown();
+            Thread.currentThread().interrupt();
+        }
+        return client.passed ? client.config : null;
+    }
+
+    private static List<DeviceInfo> load(File cache, String fingerprint) {
+        if (!cache.isFile()) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(cache.toPath())) {
+            props.load(in);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Unable to read device cache", ex);
+            return null;
+        }
+        if (!fingerprint.equals(props.getProperty("fingerprint"))) {
+            return null;
+        }
+        try {
+            int count = Integer.parseInt(props.getProperty("devices"));
+            List<DeviceInfo> devices = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String prefix = "device." + i + ".";
+                List<Config> configs = new ArrayList<>();
+                String list = props.getProperty(prefix + "configs", "");
+                for (String entry : list.split(",")) {
+                    if (!entry.isEmpty()) {
+                        String[] parts = entry.split("/");
+                        configs.add(new Config(Float.parseFloat(parts[0]), Integer.parseInt(parts[1])));
+                    }
+                }
+                devices.add(new DeviceInfo(props.getProperty(prefix + "library"),
+                        props.getProperty(prefix + "name"),
+                        Integer.parseInt(props.getProperty(prefix + "inputs")),
+                        Integer.parseInt(props.getProperty(prefix + "outputs")),
+                        configs));
+            }
+            return devices;
+        } catch (RuntimeException ex) {
+            LOG.log(Level.WARNING, "Invalid device cache", ex);
+            return null;
+        }
+    }
+
+    private static void save(File cache, String fingerprint, List<DeviceInfo> devices) {
+        Properties props = new Properties();
+        props.setProperty("fingerprint", fingerprint);
+        props.setProperty("devices", Integer.toString(devices.size()));
+        for (int i = 0; i < devices.size(); i++) {
+            DeviceInfo device = devices.get(i);
+            String prefix = "device." + i + ".";
+            props.setProperty(prefix + "library", device.library);
+            props.setProperty(prefix + "name", device.name);
+            props.setProperty(prefix + "inputs", Integer.toString(device.inputs));
+            props.setProperty(prefix + "outputs", Integer.toString(device.outputs));
+            StringBuilder sb = new StringBuilder();
+            for (Config config : device.configs) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(config.sampleRate).append('/').append(config.bufferSize);
+            }
+            props.setProperty(prefix + "configs", sb.toString());
+        }
+        // write to a temporary file and move, so a partial cache is never read
+        try {
+            File tmp = new File(cache.getPath() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+                props.store(out, "JAudioLibs device cache");
+            }
+            Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Unable to write device cache", ex);
+        }
+    }
+
+    private static class Listing {
+
+        private final AudioServerProvider provider;
+        private final Device device;
+
+        private Listing(AudioServerProvider provider, Device device) {
+            this.provider = provider;
+            this.device = device;
+        }
+
+        private String name() {
+            return device == null ? DEFAULT_DEVICE : device.getName();
+        }
+
+        private int inputs() {
+            return device == null ? 2 : device.getMaxInputChannels();
+        }
+
+        private int outputs() {
+            return device == null ? 2 : device.getMaxOutputChannels();
+        }
+
+    }
+
+    private static class ProbeClient implements AudioClient {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Config config;
+        private volatile boolean passed;
+        private long periodNanos;
+        private int periods;
+        private int count;
+        private long lastTime;
+
+        public void configure(AudioConfiguration context) throws Exception {
+            config = new Config(context.getSampleRate(), context.getMaxBufferSize());
+            periodNanos = (long) (context.getMaxBufferSize() * 1e9 / context.getSampleRate());
+            periods = (int) Math.max(MIN_PROBE_PERIODS,
+                    TimeUnit.MILLISECONDS.toNanos(PROBE_MILLIS) / periodNanos);
+        }
+
+        public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
+            // as ProcessMonitor, a gap of 1.5 periods or more is a missed period
+            if (count > 0 && (time - lastTime) * 2 >= periodNanos * 3) {
+                return false;
+            }
+            lastTime = time;
+            if (++count >= periods) {
+                passed = true;
+                return false;
+            }
+            return true;
+        }
+
+        public void shutdown() {
+            done.countDown();
+        }
+
+    }
+
+    /**
+     * A device found by discovery and the configurations it accepted.
+     */
+    public static final class DeviceInfo {
+
+        private final String library;
+        private final String name;
+        private final int inputs;
+        private final int outputs;
+        private final List<Config> configs;
+
+        private DeviceInfo(String library, String name, int inputs, int outputs, List<Config> configs) {
+            this.library = library;
+            this.name = name;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.configs = Collections.unmodifiableList(configs);
+        }
+
+        public String getLibrary() {
+            return library;
+        }
+
+        /**
+         * Device name, or an empty string for the library's default device.
+         *
+         * @return name
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getMaxInputChannels() {
+            return inputs;
+        }
+
+        public int getMaxOutputChannels() {
+            return outputs;
+        }
+
+        /**
+         * Configurations accepted, by sample rate then buffer size.
+         *
+         * @return configurations
+         */
+        public List<Config> getConfigs() {
+            return configs;
+        }
+
+        /**
+         * The matching Device extension, for passing in an
+         * AudioConfiguration.
+         *
+         * @return device, or null for the default device or if it is no
+         * longer available
+         */
+        public Device findDevice() {
+            if (name.isEmpty()) {
+                return null;
+            }
+            Iterable<Device> devices = provider(library).findAll(Device.class);
+            if (devices != null) {
+                for (Device device : devices) {
+                    if (name.equals(device.getName())) {
+                        return device;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return library + " : " + (name.isEmpty() ? "(default)" : name)
+                    + " (inputs: " + inputs + ", outputs: " + outputs + ") " + configs;
+        }
+
+    }
+
+    /**
+     * A sample rate and buffer size.
+     */
+    public static final class Config implements Comparable<Config> {
+
+        private final float sampleRate;
+        private final int bufferSize;
+
+        private Config(float sampleRate, int bufferSize) {
+            this.sampleRate = sampleRate;
+            this.bufferSize = bufferSize;
+        }
+
+        public float getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        /**
+         * Length of one period, the lower bound of the latency.
+         *
+         * @return seconds
+         */
+        public double getLatency() {
+            return bufferSize / (double) sampleRate;
+        }
+
+        @Override
+        public int compareTo(Config o) {
+            int c = Float.compare(sampleRate, o.sampleRate);
+            return c != 0 ? c : Integer.compare(bufferSize, o.bufferSize);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Config && compareTo((Config) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Float.hashCode(sampleRate) * 31 + bufferSize;
+        }
+
+        @Override
+        public String toString() {
+            return (int) sampleRate + "Hz/" + bufferSize;
+        }
+
+    }
+
+    /**
+     * A device and configuration picked by {@link #lowestLatency(List, int, int)}.
+     */
+    public static final class Selection {
+
+        private final DeviceInfo device;
+        private final Config config;
+
+        private Selection(DeviceInfo device, Config config) {
+            this.device = device;
+            this.config = config;
+        }
+
+        public DeviceInfo getDevice() {
+            return device;
+        }
+
+        public Config getConfig() {
+            return config;
+        }
+
+        /**
+         * An AudioConfiguration for this selection, including the Device
+         * extension if not the default device.
+         *
+         * @param inputs input channels
+         * @param outputs output channels
+         * @param exts further extensions, eg. ClientID
+         * @return configuration
+         */
+        public AudioConfiguration toConfiguration(int inputs, int outputs, Object... exts) {
+            List<Object> all = new ArrayList<>();
+            Collections.addAll(all, exts);
+            Device dev = device.findDevice();
+            if (dev != null) {
+                all.add(dev);
+            }
+            return new AudioConfiguration(config.sampleRate, inputs, outputs,
+                    config.bufferSize, all.toArray());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s, %.2f ms", device.library,
+                    device.name.isEmpty() ? "(default)" : device.name, config.getLatency() * 1000);
+        }
+
+    }
+
+}
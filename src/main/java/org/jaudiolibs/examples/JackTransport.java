@@ -14,12 +14,22 @@
  */
 package org.jaudiolibs.examples;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +51,33 @@ import org.jaudiolibs.jnajack.JackTransportState;
  * {@link https://github.com/jackaudio/jack2/blob/master/example-clients/transport.c}).
  * It demonstrates how to work with the JACK transport system.
  *
+ * As timebase master, bar, beat and tick are taken from a {@link TempoMap} of
+ * tempo and time signature changes, edited with the tempo, meter and clear
+ * commands.
+ *
+ * Run with {@code --batch [file]} to read timestamped commands from a file, or
+ * from stdin if no file or "-" is given, instead of prompting. Each line is a
+ * time in milliseconds from the start of the batch, or +milliseconds after the
+ * previous command, followed by a command and its argument. Blank lines and
+ * lines starting with # are ignored.
+ * <pre>
+ * 0 activate
+ * 0 master
+ * 100 play
+ * +2000 tempo 140@9
+ * +500.5 locate 0
+ * 10000 exit
+ * </pre>
+ * Lines are parsed on a reader thread and executed on the main thread at their
+ * scheduled time, so a script can be piped in while it runs. When the batch
+ * ends, the latency between the scheduled and actual time of each command and
+ * the time the command took are reported.
+ *
+ * Run with {@code --control [port]} to activate as timebase master and take
+ * OSC messages from a {@link ControlServer} on a local UDP port, default 9001.
+ * Addresses are /transport/play, /transport/stop, /transport/locate with a
+ * frame, /transport/tempo with beats per minute, and /transport/exit. Only the
+ * latest message to each address is acted on once per JACK period.
  */
 public class JackTransport implements JackShutdownCallback, JackTimebaseCallback {
 
@@ -48,25 +85,36 @@ public class JackTransport implements JackShutdownCallback, JackTimebaseCallback
     private JackClient client;
     private Map<String, Command> commandMap;
     private List<String> commandList;
+    // lines the batch reader could not parse, set before END_OF_BATCH is queued
+    private volatile int parseErrors;
 
     /*
-	 * Time and tempo variables. These are global to the entire,
-	 * transport timeline. There is no attempt to keep a true tempo map.
-	 * The default time signature is: "march time", 4/4, 120bpm
+     * The tempo map is replaced as a whole from the command loop. The
+     * timebase callback keeps its own reference to notice changes, and a
+     * cursor holding the current position in the map.
      */
-    private float beatsPerBar = 4.0f;
-    private float beatType = 4.0f;
-    private double ticksPerBeat = 1920.0;
-    private double bpm = 120.0;
-    private volatile boolean timeReset = true;
+    private volatile TempoMap tempoMap;
+    private TempoMap currentMap;
+    private final TempoMap.Cursor cursor = new TempoMap.Cursor();
+
+    private final static String[] CONTROL_ADDRESSES = {
+        "/transport/play", "/transport/stop", "/transport/locate",
+        "/transport/tempo", "/transport/exit"
+    };
 
     /* true when time values change */
     public static void main(String[] args) {
         try {
             JackTransport transport = new JackTransport();
-            transport.commandLoop();
+            if (args.length > 0 && args[0].equals("--batch")) {
+                transport.batch(args.length > 1 ? args[1] : "-");
+            } else if (args.length > 0 && args[0].equals("--control")) {
+                transport.control(args.length > 1 ? Integer.parseInt(args[1]) : 9001);
+            } else {
+                transport.commandLoop();
+            }
 
-        } catch (JackException e) {
+        } catch (JackException | IOException | InterruptedException e) {
             Logger.getLogger(JackTransport.class.getName()).log(Level.SEVERE, null, e);
         }
     }
@@ -83,6 +131,8 @@ public class JackTransport implements JackShutdownCallback, JackTimebaseCallback
             if (!status.isEmpty()) {
                 System.out.println("JACK client status : " + status);
             }
+            // The default time signature is: "march time", 4/4, 120bpm
+            tempoMap = TempoMap.builder(client.getSampleRate()).build();
 
         } catch (JackException ex) {
             if (!status.isEmpty()) {
@@ -131,6 +181,169 @@ public class JackTransport implements JackShutdownCallback, JackTimebaseCallback
         clientShutdown(client);
     }
 
+    private void batch(String source) throws IOException, InterruptedException {
+        BufferedReader reader = "-".equals(source)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+        // bounded, so a large file is read ahead without filling the heap
+        BlockingQueue<Scheduled> queue = new ArrayBlockingQueue<>(4096);
+        Thread readerThread = new Thread(() -> readBatch(reader, queue), "Transport batch reader");
+        readerThread.setDaemon(true);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram duration = new LatencyHistogram();
+        long count = 0;
+        long errors = 0;
+        long late = 0;
+        long start = System.nanoTime();
+        readerThread.start();
+
+        while (!done) {
+            Scheduled next = queue.take();
+            if (next == END_OF_BATCH) {
+                errors += parseErrors;
+                break;
+            }
+            long due = start + next.time;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long begin = System.nanoTime();
+            try {
+                next.command.execute(next.arg);
+            } catch (RuntimeException ex) {
+                System.err.println("Line " + next.line + " : " + ex);
+                errors++;
+            }
+            long end = System.nanoTime();
+            latency.record(begin - due);
+            duration.record(end - begin);
+            if (begin - due > TimeUnit.MILLISECONDS.toNanos(1)) {
+                late++;
+            }
+            count++;
+        }
+
+        long[] lat = latency.snapshot();
+        long[] dur = duration.snapshot();
+        System.out.println("Batch : " + count + " commands in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms, "
+                + errors + " errors, " + late + " more than 1ms late");
+        System.out.println("Latency (us) : p50 " + micros(lat, 50) + ", p99 " + micros(lat, 99)
+                + ", max " + micros(lat, 100));
+        System.out.println("Execution (us) : p50 " + micros(dur, 50) + ", p99 " + micros(dur, 99)
+                + ", max " + micros(dur, 100));
+        clientShutdown(client);
+    }
+
+    private void control(int port) throws JackException, IOException {
+        ControlValues controls = new ControlValues(CONTROL_ADDRESSES);
+        client.activate();
+        client.setTimebaseCallback(this, false);
+        long period = TimeUnit.SECONDS.toNanos(1) * client.getBufferSize() / client.getSampleRate();
+        try (ControlServer server = ControlServer.open(port, controls)) {
+            System.out.println("Listening for OSC on localhost:" + server.getPort());
+            while (!done) {
+                LockSupport.parkNanos(period);
+                int slot;
+                while ((slot = controls.poll()) >= 0) {
+                    control(slot, controls.value(slot));
+                }
+            }
+            System.out.println("Control : " + server.getReceived() + " messages, "
+                    + server.getInvalid() + " invalid, "
+                    + controls.getSuperseded() + " superseded");
+        }
+        clientShutdown(client);
+    }
+
+    private void control(int slot, double value) {
+        switch (slot) {
+            case 0:
+                transportPlay();
+                break;
+            case 1:
+                transportStop();
+                break;
+            case 2:
+                try {
+                    client.transportLocate((int) Math.max(0, value));
+                } catch (JackException e) {
+                    System.err.println("Unable to execute locate: " + e.getMessage());
+                }
+                break;
+            case 3:
+                try {
+                    tempoMap = tempoMap.toBuilder().tempo(1, value).build();
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unable to set tempo: " + e.getMessage());
+                }
+                break;
+            case 4:
+                done = true;
+                break;
+        }
+    }
+
+    private static long micros(long[] histogram, double percentile) {
+        return TimeUnit.NANOSECONDS.toMicros(LatencyHistogram.percentile(histogram, null, percentile));
+    }
+
+    /*
+     * Parse batch lines onto the queue, ending with END_OF_BATCH. The number
+     * of lines that could not be parsed is set in parseErrors before the end
+     * marker is queued.
+     */
+    private void readBatch(BufferedReader reader, BlockingQueue<Scheduled> queue) {
+        int errors = 0;
+        try {
+            long previous = 0;
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                Command command = parts.length > 1 ? commandMap.get(parts[1]) : null;
+                if (command == null || parts.length > 3) {
+                    System.err.println("Line " + lineNumber + " : invalid command " + line);
+                    errors++;
+                    continue;
+                }
+                long time;
+                try {
+                    boolean relative = parts[0].startsWith("+");
+                    double ms = Double.parseDouble(relative ? parts[0].substring(1) : parts[0]);
+                    time = (relative ? previous : 0) + (long) (ms * 1000000);
+                } catch (NumberFormatException ex) {
+                    System.err.println("Line " + lineNumber + " : invalid time " + parts[0]);
+                    errors++;
+                    continue;
+                }
+                previous = time;
+                queue.put(new Scheduled(time, command, parts.length > 2 ? parts[2] : null, lineNumber));
+            }
+        } catch (IOException ex) {
+            System.err.println("Unable to read batch: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            return;
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+            }
+        }
+        parseErrors = errors;
+        try {
+            queue.put(END_OF_BATCH);
+        } catch (InterruptedException ex) {
+        }
+    }
+
     /*
 	 * (non-Javadoc)
 	 * @see org.jaudiolibs.jnajack.JackShutdownCallback#clientShutdown(org.jaudiolibs.jnajack.JackClient)
@@ -150,56 +363,32 @@ public class JackTransport implements JackShutdownCallback, JackTimebaseCallback
     @Override
     public void updatePosition(JackClient invokingClient, JackTransportState state, int nframes, JackPosition position, boolean newPosition) {
 
-        double min;
-        /* minutes since frame 0 */
-        long absTick;
-        /* ticks since frame 0 */
-        long absBeat;
-        /* beats since frame 0 */
-
-        if (newPosition || timeReset) {
-            position.setValid(JackPositionBits.JackPositionBBT);
-            position.setBeatsPerBar(beatsPerBar);
-            position.setBeatType(beatType);
-            position.setTicksPerBeat(ticksPerBeat);
-            position.setBeatsPerMinute(bpm);
-
-            timeReset = false;
-
-            /*
-			 * Compute BBT info from frame number. This is relatively
-			 * simple here, but would become complex if we supported tempo
-			 * or time signature changes at specific locations in the
-			 * transport timeline.
-             */
-            min = position.getFrame() / (position.getFrameRate() * 60.0);
-            absTick = (long) (min * position.getBeatsPerMinute() * position.getTicksPerBeat());
-            absBeat = absTick / (long) position.getTicksPerBeat();
-
-            position.setBar((int) (absBeat / position.getBeatsPerBar()));
-            position.setBeat((int) (absBeat - (position.getBar() * position.getBeatsPerBar()) + 1));
-            position.setTick((int) (absTick - (absBeat * position.getTicksPerBeat())));
-            position.setBarStartTick(position.getBar() * position.getBeatsPerBar() * position.getBeatsPerBar());
-            position.incrementBar();
+        TempoMap map = tempoMap;
+        long frame = position.getFrame();
 
+        if (newPosition || map != currentMap) {
+            /* Relocated, or the map has changed - find the segment of the
+             * tempo map containing the frame.
+             */
+            currentMap = map;
+            cursor.locate(map, frame);
         } else {
-            /* Compute BBT info based on previous period. */
-
-            position.addToTick((int) (nframes * position.getTicksPerBeat() * position.getBeatsPerMinute()
-                    / (position.getFrameRate() * 60.0)));
-
-            while (position.getTick() >= position.getTicksPerBeat()) {
-                position.subtractFromTick((int) position.getTicksPerBeat());
-                position.incrementBeat();
-                if (position.getBeat() > position.getBeatsPerBar()) {
-                    position.setBeat(1);
-                    position.incrementBar();
-                    position.addToBarStartTick(position.getBeatsPerBar() * position.getTicksPerBeat());
-                }
-            }
-
+            /* Rolling - only the current or following segments need to be
+             * checked.
+             */
+            cursor.advance(map, frame);
         }
 
+        position.setValid(JackPositionBits.JackPositionBBT);
+        position.setBeatsPerBar(cursor.getBeatsPerBar());
+        position.setBeatType(cursor.getBeatType());
+        position.setTicksPerBeat(map.getTicksPerBeat());
+        position.setBeatsPerMinute(cursor.getBeatsPerMinute());
+        position.setBar(cursor.getBar());
+        position.setBeat(cursor.getBeat());
+        position.setTick(cursor.getTick());
+        position.setBarStartTick(cursor.getBarStartTick());
+
     }
 
     private void transportPlay() {
@@ -333,16 +522,51 @@ public class JackTransport implements JackShutdownCallback, JackTimebaseCallback
 
             }
         });
-        cmdMap.put("tempo", new Command("tempo", "Set beat tempo <beats_per_min>") {
+        cmdMap.put("tempo", new Command("tempo", "Set beat tempo <beats_per_min>[@<bar>]") {
             @Override
             public void execute(String arg) {
-                float tempo = 120.0f;
-                if (arg != null) {
-                    tempo = Float.parseFloat(arg);
+                String[] parts = splitBar(arg == null ? "120" : arg);
+                try {
+                    tempoMap = tempoMap.toBuilder()
+                            .tempo(Integer.parseInt(parts[1]), Double.parseDouble(parts[0]))
+                            .build();
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unable to set tempo: " + e.getMessage());
                 }
-                bpm = tempo;
-                timeReset = true;
-
+            }
+        });
+        cmdMap.put("meter", new Command("meter", "Set time signature <beats>/<type>[@<bar>]") {
+            @Override
+            public void execute(String arg) {
+                if (arg == null) {
+                    System.out.println("meter command requires a time signature, eg. 3/4");
+                    return;
+                }
+                String[] parts = splitBar(arg);
+                String[] sig = parts[0].split("/");
+                try {
+                    if (sig.length != 2) {
+                        throw new IllegalArgumentException("Invalid time signature " + parts[0]);
+                    }
+                    tempoMap = tempoMap.toBuilder()
+                            .meter(Integer.parseInt(parts[1]),
+                                    Integer.parseInt(sig[0]), Integer.parseInt(sig[1]))
+                            .build();
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unable to set time signature: " + e.getMessage());
+                }
+            }
+        });
+        cmdMap.put("map", new Command("map", "Display the tempo map") {
+            @Override
+            public void execute(String arg) {
+                System.out.print(tempoMap);
+            }
+        });
+        cmdMap.put("clear", new Command("clear", "Clear the tempo map to 4/4, 120bpm") {
+            @Override
+            public void execute(String arg) {
+                tempoMap = TempoMap.builder(tempoMap.getFrameRate()).build();
             }
         });
         cmdMap.put("timeout", new Command("timeout", "Set sync timeout in <seconds>") {
@@ -402,6 +626,17 @@ public class JackTransport implements JackShutdownCallback, JackTimebaseCallback
         return cmdMap;
     }
 
+    /**
+     * Split a command argument of the form value[@bar]. Bar defaults to 1.
+     */
+    private static String[] splitBar(String arg) {
+        int at = arg.indexOf('@');
+        if (at < 0) {
+            return new String[]{arg, "1"};
+        }
+        return new String[]{arg.substring(0, at), arg.substring(at + 1)};
+    }
+
     private List<String> createCommandList() {
         List<String> cmdList = new ArrayList<>();
 
@@ -417,6 +652,23 @@ public class JackTransport implements JackShutdownCallback, JackTimebaseCallback
         return cmdList;
     }
 
+    private final static Scheduled END_OF_BATCH = new Scheduled(0, null, null, 0);
+
+    private static final class Scheduled {
+
+        final long time;
+        final Command command;
+        final String arg;
+        final int line;
+
+        Scheduled(long time, Command command, String arg, int line) {
+            this.time = time;
+            this.command = command;
+            this.arg = arg;
+            this.line = line;
+        }
+    }
+
     private abstract class Command {
 
         String name;
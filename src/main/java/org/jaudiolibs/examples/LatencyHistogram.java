@@ -0,0 +1,111 @@
+package org.jaudiolibs.examples;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of durations in nanoseconds with log-linear buckets,
+ * in the style of HdrHistogram.
+ *
+ * Values below 128 are counted exactly. Above that each power of two is split
+ * into 64 buckets, so any recorded value is known to within about 1.5% across
+ * the whole range of a long. All storage is allocated up front.
+ *
+ * A single thread records, without locking or allocation. Any thread may take
+ * a {@link #snapshot()} at any time - counts are read individually, so a
+ * snapshot taken while recording may be out by the values recorded during the
+ * copy.
+ */
+final class LatencyHistogram {
+
+    private final static int SUB_BITS = 6;
+    private final static int SUB_COUNT = 1 << SUB_BITS;
+    private final static int LINEAR_MAX = SUB_COUNT << 1;
+    private final static int BUCKETS = (63 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts;
+
+    LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Record a value. Recording thread only. Negative values are recorded as
+     * zero.
+     *
+     * @param nanos value
+     */
+    void record(long nanos) {
+        int idx = index(Math.max(0, nanos));
+        counts.lazySet(idx, counts.get(idx) + 1);
+    }
+
+    /**
+     * Copy the current counts. Any thread.
+     *
+     * @return counts per bucket
+     */
+    long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Value at the given percentile of a snapshot, or of the difference
+     * between two snapshots.
+     *
+     * @param counts snapshot
+     * @param baseline earlier snapshot to subtract, or null
+     * @param percentile percentile, 0 to 100
+     * @return highest value of the bucket containing the percentile, or zero
+     * if nothing was recorded
+     */
+    static long percentile(long[] counts, long[] baseline, double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += count(counts, baseline, i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long running = 0;
+        for (int i = 0; i < counts.length; i++) {
+            running += count(counts, baseline, i);
+            if (running >= target) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(counts.length - 1);
+    }
+
+    private static long count(long[] counts, long[] baseline, int idx) {
+        return baseline == null ? counts[idx] : counts[idx] - baseline[idx];
+    }
+
+    static int index(long value) {
+        if (value < LINEAR_MAX) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    static long lowestValue(int index) {
+        if (index < LINEAR_MAX) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        return (long) (index - (shift << SUB_BITS)) << shift;
+    }
+
+    static long highestValue(int index) {
+        if (index == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowestValue(index + 1) - 1;
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.jaudiolibs.examples;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A preallocated single-producer, single-consumer ring buffer of raw MIDI
+ * events.
+ *
+ * {@link #offer(long, byte[], int)} is wait-free and never allocates, so it
+ * can be called from a realtime thread. If the ring is full the event is
+ * dropped and counted. Events longer than the slot size (eg. SysEx) are
+ * truncated, but their original size is retained.
+ *
+ * Only one thread may offer events, and only one (other) thread may drain
+ * them.
+ */
+final class MidiEventRing {
+
+    private final int capacity;
+    private final int mask;
+    private final int slotSize;
+    private final long[] times;
+    private final int[] sizes;
+    private final byte[] data;
+
+    // head written only by producer, tail only by consumer
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final AtomicLong dropped;
+
+    private long cachedTail;
+
+    /**
+     * Create a ring buffer.
+     *
+     * @param capacity maximum number of queued events, rounded up to a power
+     * of two
+     * @param slotSize maximum number of bytes stored per event
+     */
+    MidiEventRing(int capacity, int slotSize) {
+        if (capacity < 1 || capacity > (1 << 24) || slotSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        int cap = 1;
+        while (cap < capacity) {
+            cap <<= 1;
+        }
+        this.capacity = cap;
+        this.mask = this.capacity - 1;
+        this.slotSize = slotSize;
+        this.times = new long[this.capacity];
+        this.sizes = new int[this.capacity];
+        this.data = new byte[this.capacity * slotSize];
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * Add an event to the ring. Producer thread only.
+     *
+     * @param time event timestamp
+     * @param event event data
+     * @param size size of event data
+     * @return true if queued, false if the ring was full and the event dropped
+     */
+    boolean offer(long time, byte[] event, int size) {
+        long h = head.get();
+        if (h - cachedTail >= capacity) {
+            cachedTail = tail.get();
+            if (h - cachedTail >= capacity) {
+                dropped.lazySet(dropped.get() + 1);
+                return false;
+            }
+        }
+        int slot = (int) h & mask;
+        times[slot] = time;
+        sizes[slot] = size;
+        System.arraycopy(event, 0, data, slot * slotSize, Math.min(size, slotSize));
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Pass all queued events to the handler and remove them from the ring.
+     * Consumer thread only. The data array passed to the handler is the ring's
+     * own storage and must not be retained or modified.
+     *
+     * @param handler event handler
+     * @return number of events drained
+     */
+    int drain(Handler handler) {
+        long t = tail.get();
+        long h = head.get();
+        int count = 0;
+        while (t < h) {
+            int slot = (int) t & mask;
+            int size = sizes[slot];
+            handler.event(times[slot], data, slot * slotSize, Math.min(size, slotSize), size);
+            t++;
+            count++;
+        }
+        tail.lazySet(t);
+        return count;
+    }
+
+    /**
+     * Discard all queued events. Consumer thread only.
+     */
+    void clear() {
+        tail.lazySet(head.get());
+    }
+
+    /**
+     * Total number of events dropped because the ring was full. May be called
+     * from any thread.
+     *
+     * @return dropped count
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of events the ring can hold.
+     *
+     * @return capacity
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Receives events from {@link MidiEventRing#drain(Handler)}.
+     */
+    interface Handler {
+
+        /**
+         * Handle an event.
+         *
+         * @param time event timestamp
+         * @param data ring storage
+         * @param offset offset of event in data
+         * @param length number of bytes of event in data
+         * @param size original size of event, greater than length if truncated
+         */
+        void event(long time, byte[] data, int offset, int length, int size);
+
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.jaudiolibs.examples;
+
+import org.jaudiolibs.audioservers.ext.ClientID;
+import org.jaudiolibs.audioservers.ext.Connections;
+import org.jaudiolibs.pipes.Pipe;
+import org.jaudiolibs.pipes.graph.Graph;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+import org.jaudiolibs.pipes.graph.UGen;
+import org.jaudiolibs.pipes.units.Chorus;
+
+/**
+ * A Pipes Graph played from JACK MIDI.
+ *
+ * Notes from a {@link MidiInput} are played by {@link MidiVoices} at the exact
+ * frame they arrived, so timing stays tight at large buffer sizes. Connect a
+ * MIDI source to the "MIDI in" port of the "Graph MIDI" client.
+ */
+public class MidiGraph extends Graph {
+
+    private final static int VOICES = 16;
+
+    private final MidiInput midi;
+
+    @UGen Chorus chorus;
+
+    public MidiGraph(MidiInput midi) {
+        this.midi = midi;
+    }
+
+    @Override
+    protected void init() {
+        Pipe syn = link(
+                new MidiVoices(midi, VOICES).attack(0.002).release(0.4),
+                chorus.depth(1.4).feedback(0.4).rate(2),
+                tee());
+
+        link(syn, out(0));
+        link(syn, out(1));
+    }
+
+    public static void main(String[] args) throws Exception {
+        MidiInput midi = MidiInput.open("Graph MIDI");
+        GraphPlayer.create(new MidiGraph(midi))
+                .library("JACK")
+                .ext(new ClientID("MIDI Graph"))
+                .ext(Connections.OUTPUT)
+                .build()
+                .start();
+    }
+
+}
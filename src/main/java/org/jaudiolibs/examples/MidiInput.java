@@ -0,0 +1,144 @@
+package org.jaudiolibs.examples;
+
+import java.util.EnumSet;
+import org.jaudiolibs.jnajack.Jack;
+import org.jaudiolibs.jnajack.JackClient;
+import org.jaudiolibs.jnajack.JackException;
+import org.jaudiolibs.jnajack.JackMidi;
+import org.jaudiolibs.jnajack.JackOptions;
+import org.jaudiolibs.jnajack.JackPort;
+import org.jaudiolibs.jnajack.JackPortFlags;
+import org.jaudiolibs.jnajack.JackPortType;
+import org.jaudiolibs.jnajack.JackProcessCallback;
+import org.jaudiolibs.jnajack.JackShutdownCallback;
+import org.jaudiolibs.jnajack.JackStatus;
+
+/**
+ * A JACK client with a single MIDI input port, passing channel messages to an
+ * audio thread with the frame they arrived at.
+ *
+ * Each message is posted to a {@link ParameterQueue} with the packed status
+ * and first data byte as the parameter, the second data byte as the value, and
+ * a frame time counted from when this client was activated - the frame at the
+ * start of the JACK cycle plus the event's offset within it. The frame at the
+ * start of the latest cycle is published so a consumer can relate this clock
+ * to its own, see {@link MidiVoices}.
+ */
+public final class MidiInput implements JackProcessCallback, JackShutdownCallback {
+
+    private final JackClient client;
+    private final JackPort port;
+    private final JackMidi.Event midiEvent;
+    private final ParameterQueue events;
+    private final byte[] data;
+
+    private volatile long cycleStart;
+    private volatile int period;
+    private long frames;
+
+    private MidiInput(JackClient client, JackPort port) {
+        this.client = client;
+        this.port = port;
+        this.midiEvent = new JackMidi.Event();
+        this.events = new ParameterQueue(1024);
+        this.data = new byte[3];
+    }
+
+    /**
+     * Open and activate a JACK client with a MIDI input port.
+     *
+     * @param name client name
+     * @return input
+     * @throws JackException if the client cannot be opened
+     */
+    public static MidiInput open(String name) throws JackException {
+        EnumSet<JackStatus> status = EnumSet.noneOf(JackStatus.class);
+        try {
+            Jack jack = Jack.getInstance();
+            JackClient client = jack.openClient(name, EnumSet.of(JackOptions.JackNoStartServer), status);
+            if (!status.isEmpty()) {
+                System.out.println("JACK client status : " + status);
+            }
+            JackPort port = client.registerPort("MIDI in", JackPortType.MIDI, JackPortFlags.JackPortIsInput);
+            MidiInput input = new MidiInput(client, port);
+            client.setProcessCallback(input);
+            client.onShutdown(input);
+            client.activate();
+            return input;
+        } catch (JackException ex) {
+            if (!status.isEmpty()) {
+                System.out.println("JACK exception client status : " + status);
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean process(JackClient client, int nframes) {
+        try {
+            int eventCount = JackMidi.getEventCount(port);
+            for (int i = 0; i < eventCount; ++i) {
+                JackMidi.eventGet(midiEvent, port, i);
+                int size = midiEvent.size();
+                // channel messages only - sysex and realtime are ignored
+                if (size < 2 || size > data.length) {
+                    continue;
+                }
+                midiEvent.read(data);
+                int status = data[0] & 0xFF;
+                if (status < 0x80 || status >= 0xF0) {
+                    continue;
+                }
+                int value = size > 2 ? data[2] & 0x7F : 0;
+                events.post((status << 8) | (data[1] & 0x7F), value, frames + midiEvent.time());
+            }
+        } catch (JackException ex) {
+            System.out.println("ERROR : " + ex);
+        }
+        cycleStart = frames;
+        period = nframes;
+        frames += nframes;
+        return true;
+    }
+
+    /**
+     * Queue of incoming messages. The consumer must be a single thread.
+     *
+     * @return queue
+     */
+    ParameterQueue events() {
+        return events;
+    }
+
+    /**
+     * Frame time at the start of the most recent JACK cycle.
+     *
+     * @return cycle start
+     */
+    long cycleStart() {
+        return cycleStart;
+    }
+
+    /**
+     * JACK buffer size, or zero before the first cycle.
+     *
+     * @return period in frames
+     */
+    int period() {
+        return period;
+    }
+
+    /**
+     * Deactivate and close the JACK client.
+     */
+    public void close() {
+        client.deactivate();
+        client.close();
+    }
+
+    @Override
+    public void clientShutdown(JackClient client) {
+        System.out.println("MIDI input shutdown");
+    }
+
+}
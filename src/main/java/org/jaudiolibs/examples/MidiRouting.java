@@ -0,0 +1,413 @@
+package org.jaudiolibs.examples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * An immutable table of MIDI routes for {@link MidiThru}, from N input ports
+ * to M output ports.
+ *
+ * Each route passes events from one input to one output, optionally filtered
+ * by channel and message type, with note transposition, a velocity curve and
+ * controller number remapping. Routes are described with a {@link Builder} and
+ * compiled into flat arrays grouped by input, with the velocity curve and
+ * controller map as lookup tables, so routing an event is a few array reads.
+ *
+ * Like {@link RoutingMatrix}, a table is handed to a running MidiThru as a
+ * whole and replaces the previous one between two JACK cycles. Note off
+ * messages are routed by the table in use when they arrive - changing the
+ * transposition of a route while notes are held may leave notes hanging.
+ */
+public final class MidiRouting {
+
+    /**
+     * Type filter bit for note off messages.
+     */
+    public final static int NOTE_OFF = 1;
+    /**
+     * Type filter bit for note on messages.
+     */
+    public final static int NOTE_ON = 1 << 1;
+    /**
+     * Type filter bit for polyphonic aftertouch messages.
+     */
+    public final static int POLY_PRESSURE = 1 << 2;
+    /**
+     * Type filter bit for control change messages.
+     */
+    public final static int CONTROL_CHANGE = 1 << 3;
+    /**
+     * Type filter bit for program change messages.
+     */
+    public final static int PROGRAM_CHANGE = 1 << 4;
+    /**
+     * Type filter bit for channel aftertouch messages.
+     */
+    public final static int CHANNEL_PRESSURE = 1 << 5;
+    /**
+     * Type filter bit for pitch bend messages.
+     */
+    public final static int PITCH_BEND = 1 << 6;
+    /**
+     * Type filter bit for system messages, including sysex and realtime.
+     * System messages are never transformed.
+     */
+    public final static int SYSTEM = 1 << 7;
+    /**
+     * All message types.
+     */
+    public final static int ALL_TYPES = 0xFF;
+    /**
+     * All channels.
+     */
+    public final static int ALL_CHANNELS = 0xFFFF;
+
+    private final static int DROP = -1;
+
+    private final int inputs;
+    private final int outputs;
+    // routes for input i are from inputStart[i] to inputStart[i + 1]
+    private final int[] inputStart;
+    private final int[] output;
+    private final int[] channels;
+    private final int[] types;
+    private final int[] transpose;
+    // 128 entries per route
+    private final byte[] velocity;
+    private final short[] controllers;
+
+    private MidiRouting(int inputs, int outputs, List<Route> routes) {
+        this.inputs = inputs;
+        this.outputs = outputs;
+        int count = routes.size();
+        inputStart = new int[inputs + 1];
+        output = new int[count];
+        channels = new int[count];
+        types = new int[count];
+        transpose = new int[count];
+        velocity = new byte[count * 128];
+        controllers = new short[count * 128];
+        int r = 0;
+        for (int in = 0; in < inputs; in++) {
+            inputStart[in] = r;
+            for (Route route : routes) {
+                if (route.input == in) {
+                    compile(r++, route);
+                }
+            }
+        }
+        inputStart[inputs] = r;
+    }
+
+    private void compile(int r, Route route) {
+        output[r] = route.output;
+        channels[r] = route.channels;
+        types[r] = route.types;
+        transpose[r] = route.transpose;
+        for (int v = 0; v < 128; v++) {
+            int mapped = v == 0 ? 0 : route.velocity.applyAsInt(v);
+            // a curve must not turn a note on into a note off
+            velocity[r * 128 + v] = (byte) (v == 0 ? 0 : Math.max(1, Math.min(127, mapped)));
+        }
+        for (int cc = 0; cc < 128; cc++) {
+            controllers[r * 128 + cc] = (short) route.controllers[cc];
+        }
+    }
+
+    /**
+     * A table passing every event from each input to the output with the same
+     * index, unchanged.
+     *
+     * @param inputs number of inputs
+     * @param outputs number of outputs
+     * @return routing
+     */
+    public static MidiRouting thru(int inputs, int outputs) {
+        Builder builder = builder(inputs, outputs);
+        for (int i = 0, count = Math.min(inputs, outputs); i < count; i++) {
+            builder.route(i, i).add();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a builder for a table with the given number of ports.
+     *
+     * @param inputs number of inputs
+     * @param outputs number of outputs
+     * @return builder
+     */
+    public static Builder builder(int inputs, int outputs) {
+        if (inputs < 1 || outputs < 1) {
+            throw new IllegalArgumentException();
+        }
+        return new Builder(inputs, outputs);
+    }
+
+    public int getInputCount() {
+        return inputs;
+    }
+
+    public int getOutputCount() {
+        return outputs;
+    }
+
+    /**
+     * Index of the first route for an input.
+     */
+    int firstRoute(int input) {
+        return input < inputs ? inputStart[input] : 0;
+    }
+
+    /**
+     * Index after the last route for an input.
+     */
+    int lastRoute(int input) {
+        return input < inputs ? inputStart[input + 1] : 0;
+    }
+
+    /**
+     * Output index of a route.
+     */
+    int output(int route) {
+        return output[route];
+    }
+
+    /**
+     * Apply a route to an event, writing the result to out.
+     *
+     * @param route route index
+     * @param in event data
+     * @param size event size
+     * @param out array for the transformed event, at least size long
+     * @return true if the event passes the route and should be written
+     */
+    boolean apply(int route, byte[] in, int size, byte[] out) {
+        if (size < 1) {
+            return false;
+        }
+        int status = in[0] & 0xFF;
+        if (status < 0x80 || status >= 0xF0) {
+            if ((types[route] & SYSTEM) == 0) {
+                return false;
+            }
+            System.arraycopy(in, 0, out, 0, size);
+            return true;
+        }
+        int type = (status >> 4) - 8;
+        if ((types[route] & (1 << type)) == 0
+                || (channels[route] & (1 << (status & 0xF))) == 0) {
+            return false;
+        }
+        System.arraycopy(in, 0, out, 0, size);
+        if (size < 2) {
+            return true;
+        }
+        switch (status & 0xF0) {
+            case 0x80:
+            case 0xA0: {
+                int note = (in[1] & 0x7F) + transpose[route];
+                if (note < 0 || note > 127) {
+                    return false;
+                }
+                out[1] = (byte) note;
+                break;
+            }
+            case 0x90: {
+                int note = (in[1] & 0x7F) + transpose[route];
+                if (note < 0 || note > 127) {
+                    return false;
+                }
+                out[1] = (byte) note;
+                if (size > 2) {
+                    out[2] = velocity[route * 128 + (in[2] & 0x7F)];
+                }
+                break;
+            }
+            case 0xB0: {
+                int cc = controllers[route * 128 + (in[1] & 0x7F)];
+                if (cc == DROP) {
+                    return false;
+                }
+                out[1] = (byte) cc;
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builder of a routing table. Call {@link #route(int, int)}, set the
+     * options for that route and {@link Route#add()} it, then build.
+     */
+    public static final class Builder {
+
+        private final int inputs;
+        private final int outputs;
+        private final List<Route> routes;
+
+        private Builder(int inputs, int outputs) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.routes = new ArrayList<>();
+        }
+
+        /**
+         * Start a route from an input to an output. By default all events
+         * pass unchanged.
+         *
+         * @param input input index
+         * @param output output index
+         * @return route
+         */
+        public Route route(int input, int output) {
+            if (input < 0 || input >= inputs) {
+                throw new IndexOutOfBoundsException("Invalid input : " + input);
+            }
+            if (output < 0 || output >= outputs) {
+                throw new IndexOutOfBoundsException("Invalid output : " + output);
+            }
+            return new Route(this, input, output);
+        }
+
+        /**
+         * Compile the routes added so far.
+         *
+         * @return routing table
+         */
+        public MidiRouting build() {
+            return new MidiRouting(inputs, outputs, routes);
+        }
+
+    }
+
+    /**
+     * The options for one route, added to the builder with {@link #add()}.
+     */
+    public static final class Route {
+
+        private final Builder builder;
+        private final int input;
+        private final int output;
+        private final int[] controllers;
+        private int channels;
+        private int types;
+        private int transpose;
+        private IntUnaryOperator velocity;
+
+        private Route(Builder builder, int input, int output) {
+            this.builder = builder;
+            this.input = input;
+            this.output = output;
+            this.channels = ALL_CHANNELS;
+            this.types = ALL_TYPES;
+            this.velocity = IntUnaryOperator.identity();
+            this.controllers = new int[128];
+            for (int i = 0; i < 128; i++) {
+                controllers[i] = i;
+            }
+        }
+
+        /**
+         * Pass only channel messages on the given channels.
+         *
+         * @param channels channel numbers, 1 to 16
+         * @return this
+         */
+        public Route channels(int... channels) {
+            int mask = 0;
+            for (int channel : channels) {
+                if (channel < 1 || channel > 16) {
+                    throw new IllegalArgumentException("Invalid channel : " + channel);
+                }
+                mask |= 1 << (channel - 1);
+            }
+            this.channels = mask;
+            return this;
+        }
+
+        /**
+         * Pass only the given message types.
+         *
+         * @param types bitwise or of the type constants, eg.
+         * NOTE_ON | NOTE_OFF
+         * @return this
+         */
+        public Route types(int types) {
+            this.types = types & ALL_TYPES;
+            return this;
+        }
+
+        /**
+         * Transpose notes by a number of semitones. Notes moved out of range
+         * are dropped.
+         *
+         * @param semitones transposition
+         * @return this
+         */
+        public Route transpose(int semitones) {
+            this.transpose = semitones;
+            return this;
+        }
+
+        /**
+         * Map note on velocities through a function. Results are clamped to 1
+         * to 127.
+         *
+         * @param curve velocity function
+         * @return this
+         */
+        public Route velocity(IntUnaryOperator curve) {
+            if (curve == null) {
+                throw new NullPointerException();
+            }
+            this.velocity = curve;
+            return this;
+        }
+
+        /**
+         * Map note on velocities through a power curve. Exponents below 1
+         * make soft notes louder, above 1 make them quieter.
+         *
+         * @param exponent curve exponent
+         * @return this
+         */
+        public Route velocityCurve(double exponent) {
+            if (!(exponent > 0)) {
+                throw new IllegalArgumentException("Exponent must be positive");
+            }
+            return velocity(v -> (int) Math.round(127 * Math.pow(v / 127.0, exponent)));
+        }
+
+        /**
+         * Change the controller number of control change messages.
+         *
+         * @param from incoming controller
+         * @param to outgoing controller, or -1 to drop the controller
+         * @return this
+         */
+        public Route remapController(int from, int to) {
+            if (from < 0 || from > 127 || to < DROP || to > 127) {
+                throw new IllegalArgumentException();
+            }
+            controllers[from] = to;
+            return this;
+        }
+
+        /**
+         * Add this route to the builder.
+         *
+         * @return builder
+         */
+        public Builder add() {
+            if (builder.routes.contains(this)) {
+                throw new IllegalStateException("Route already added");
+            }
+            builder.routes.add(this);
+            return builder;
+        }
+
+    }
+
+}
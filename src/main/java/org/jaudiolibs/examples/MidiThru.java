@@ -17,11 +17,7 @@
  */
 package org.jaudiolibs.examples;
 
-import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.EnumSet;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jaudiolibs.jnajack.Jack;
@@ -36,28 +32,62 @@ import org.jaudiolibs.jnajack.JackProcessCallback;
 import org.jaudiolibs.jnajack.JackShutdownCallback;
 import org.jaudiolibs.jnajack.JackStatus;
 
+/**
+ * A JACK MIDI client routing events from N input ports to M output ports.
+ *
+ * Routing is defined by a {@link MidiRouting} table, which filters and
+ * transforms events on each route. By default each input is passed unchanged
+ * to the output with the same index. A new table can be set at any time with
+ * {@link #setRouting(MidiRouting)} and is picked up at the start of the next
+ * JACK cycle. The process callback walks the table without allocation or
+ * locks. Event buffers are allocated up front for events of up to
+ * {@link #MAX_EVENT_SIZE} bytes. Larger events, ie. long sysex, are dropped
+ * and counted.
+ *
+ * Usage : MidiThru [inputs] [outputs]
+ */
 public class MidiThru implements JackProcessCallback, JackShutdownCallback {
 
     private final static boolean DEBUG = true;
 
     private final JackClient client;
-    private final JackPort inputPort;
-    private final JackPort outputPort;
-    private final JackMidi.Event midiEvent;
+    private final Ports ports;
     
-    private byte[] data;
+    private final static int DEBUG_CAPACITY = 4096;
+    private final static int DEBUG_EVENT_SIZE = 16;
+
+    /**
+     * Largest event passed through, in bytes.
+     */
+    public final static int MAX_EVENT_SIZE = 4096;
+
+    private volatile MidiRouting routing;
+
+    private final byte[] data = new byte[MAX_EVENT_SIZE];
+    private final byte[] routed = new byte[MAX_EVENT_SIZE];
+    private volatile long oversized;
+    private long reportedOversized;
+    private final int[] nextIndex;
+    private final int[] eventCount;
+    private long frameTime;
 
-    private BlockingQueue<String> debugQueue;
+    /* Events are passed to the main thread as raw bytes, and only formatted
+     * there, to keep the process callback free of allocation and locks.
+     */
+    private MidiEventRing debugRing;
     private StringBuilder sb;
+    private long reportedDrops;
 
     public static void main(String[] args) {
         try {
-            MidiThru midiSource = new MidiThru();
+            int inputs = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+            int outputs = args.length > 1 ? Integer.parseInt(args[1]) : inputs;
+            MidiThru midiSource = new MidiThru(inputs, outputs);
             midiSource.activate();
             while (true) {
                 if (DEBUG) {
-                    String msg = midiSource.debugQueue.take();
-                    System.out.println(msg);
+                    midiSource.printDebug();
+                    Thread.sleep(10);
                 } else {
                     Thread.sleep(100000);
                 }
@@ -67,7 +97,7 @@ public class MidiThru implements JackProcessCallback, JackShutdownCallback {
         }
     }
 
-    private MidiThru() throws JackException {
+    private MidiThru(int inputs, int outputs) throws JackException {
         EnumSet<JackStatus> status = EnumSet.noneOf(JackStatus.class);
         try {
             Jack jack = Jack.getInstance();
@@ -75,13 +105,21 @@ public class MidiThru implements JackProcessCallback, JackShutdownCallback {
             if (!status.isEmpty()) {
                 System.out.println("JACK client status : " + status);
             }
-            inputPort = client.registerPort("MIDI in", JackPortType.MIDI, JackPortFlags.JackPortIsInput);
-            outputPort = client.registerPort("MIDI out", JackPortType.MIDI, JackPortFlags.JackPortIsOutput);
-            midiEvent = new JackMidi.Event();
-            if (DEBUG) {
-                debugQueue = new LinkedBlockingQueue<String>();
-                sb = new StringBuilder();
+            JackPort[] inputPorts = new JackPort[inputs];
+            for (int i = 0; i < inputs; i++) {
+                inputPorts[i] = client.registerPort(inputs == 1 ? "MIDI in" : "MIDI in " + (i + 1),
+                        JackPortType.MIDI, JackPortFlags.JackPortIsInput);
+            }
+            JackPort[] outputPorts = new JackPort[outputs];
+            for (int i = 0; i < outputs; i++) {
+                outputPorts[i] = client.registerPort(outputs == 1 ? "MIDI out" : "MIDI out " + (i + 1),
+                        JackPortType.MIDI, JackPortFlags.JackPortIsOutput);
             }
+            ports = new JackPorts(inputPorts, outputPorts);
+            routing = MidiRouting.thru(inputs, outputs);
+            nextIndex = new int[inputs];
+            eventCount = new int[inputs];
+            initDebug();
         } catch (JackException ex) {
             if (!status.isEmpty()) {
                 System.out.println("JACK exception client status : " + status);
@@ -91,6 +129,74 @@ public class MidiThru implements JackProcessCallback, JackShutdownCallback {
 
     }
 
+    /**
+     * Create a MidiThru that is not connected to JACK, processing events from
+     * the given ports when {@link #processEvents(int)} is called. Used for
+     * benchmarking with a stub MIDI source.
+     */
+    MidiThru(Ports ports, MidiRouting routing) {
+        this.client = null;
+        this.ports = ports;
+        this.nextIndex = new int[ports.getInputCount()];
+        this.eventCount = new int[ports.getInputCount()];
+        setRouting(routing);
+        initDebug();
+    }
+
+    /**
+     * Replace the routing table. May be called from any thread - the new table
+     * is used from the next JACK cycle. Ports not covered by the table are
+     * ignored.
+     *
+     * @param routing routing table
+     */
+    public void setRouting(MidiRouting routing) {
+        if (routing == null) {
+            throw new NullPointerException();
+        }
+        this.routing = routing;
+    }
+
+    public MidiRouting getRouting() {
+        return routing;
+    }
+
+    private void initDebug() {
+        if (DEBUG) {
+            debugRing = new MidiEventRing(DEBUG_CAPACITY, DEBUG_EVENT_SIZE);
+            sb = new StringBuilder();
+        }
+    }
+
+    private void printDebug() {
+        debugRing.drain(this::printEvent);
+        long drops = debugRing.getDropped();
+        if (drops != reportedDrops) {
+            System.out.println("Dropped " + (drops - reportedDrops) + " debug events");
+            reportedDrops = drops;
+        }
+        long large = oversized;
+        if (large != reportedOversized) {
+            System.out.println("Dropped " + (large - reportedOversized) + " events over "
+                    + MAX_EVENT_SIZE + " bytes");
+            reportedOversized = large;
+        }
+    }
+
+    private void printEvent(long time, byte[] data, int offset, int length, int size) {
+        sb.setLength(0);
+        sb.append(time);
+        sb.append(": ");
+        for (int j = 0; j < length; j++) {
+            sb.append((j == 0) ? "" : ", ");
+            sb.append(data[offset + j] & 0xFF);
+        }
+        if (length < size) {
+            sb.append(", ... (").append(size).append(" bytes)");
+        }
+        System.out.println(sb);
+    }
+
     private void activate() throws JackException {
         client.setProcessCallback(this);
         client.onShutdown(this);
@@ -100,33 +206,89 @@ public class MidiThru implements JackProcessCallback, JackShutdownCallback {
     @Override
     public boolean process(JackClient client, int nframes) {
         try {
-            JackMidi.clearBuffer(outputPort);
-            int eventCount = JackMidi.getEventCount(inputPort);
-            for (int i = 0; i < eventCount; ++i) {
-                JackMidi.eventGet(midiEvent, inputPort, i);
-                int size = midiEvent.size();
-                if (data == null || data.length < size) {
-                    data = new byte[size];
-                }
-                midiEvent.read(data);
+            processEvents(nframes);
+            return true;
+        } catch (JackException ex) {
+            System.out.println("ERROR : " + ex);
+            return false;
+        }
+    }
 
-                if (DEBUG) {
-                    sb.setLength(0);
-                    sb.append(midiEvent.time());
-                    sb.append(": ");
-                    for (int j = 0; j < size; j++) {
-                        sb.append((j == 0) ? "" : ", ");
-                        sb.append(data[j] & 0xFF);
+    void processEvents(int nframes) throws JackException {
+        MidiRouting table = routing;
+        int outputCount = Math.min(ports.getOutputCount(), table.getOutputCount());
+        ports.clearOutputs();
+
+        /* JACK requires events on each output in time order, so inputs are
+         * merged by time before routing. Each input is already in order.
+         */
+        int inputCount = nextIndex.length;
+        for (int in = 0; in < inputCount; in++) {
+            eventCount[in] = ports.getEventCount(in);
+            nextIndex[in] = 0;
+            if (eventCount[in] > 0) {
+                ports.loadEvent(in, 0);
+            }
+        }
+        while (true) {
+            int in = -1;
+            int time = Integer.MAX_VALUE;
+            for (int i = 0; i < inputCount; i++) {
+                if (nextIndex[i] < eventCount[i]) {
+                    int t = ports.eventTime(i);
+                    if (t < time) {
+                        in = i;
+                        time = t;
                     }
-                    debugQueue.offer(sb.toString());
                 }
+            }
+            if (in < 0) {
+                break;
+            }
+            int size = ports.eventSize(in);
+            boolean fits = size <= MAX_EVENT_SIZE;
+            if (fits) {
+                ports.readEvent(in, data);
+            } else {
+                oversized++;
+            }
+            if (++nextIndex[in] < eventCount[in]) {
+                ports.loadEvent(in, nextIndex[in]);
+            }
+            if (!fits) {
+                continue;
+            }
 
-                JackMidi.eventWrite(outputPort, midiEvent.time(), data, midiEvent.size());
+            if (DEBUG) {
+                // never blocks - dropped events are counted by the ring
+                debugRing.offer(frameTime + time, data, size);
             }
-            return true;
-        } catch (JackException ex) {
-            System.out.println("ERROR : " + ex);
-            return false;
+
+            for (int r = table.firstRoute(in), end = table.lastRoute(in); r < end; r++) {
+                int out = table.output(r);
+                if (out < outputCount && table.apply(r, data, size, routed)) {
+                    ports.writeEvent(out, time, routed, size);
+                }
+            }
+        }
+        frameTime += nframes;
+    }
+
+    /**
+     * Number of events dropped for being larger than {@link #MAX_EVENT_SIZE}.
+     *
+     * @return dropped events
+     */
+    public long getOversizedEvents() {
+        return oversized;
+    }
+
+    /**
+     * Clear any pending debug events without printing them.
+     */
+    void clearDebug() {
+        if (DEBUG) {
+            debugRing.clear();
         }
     }
 
@@ -134,4 +296,106 @@ public class MidiThru implements JackProcessCallback, JackShutdownCallback {
     public void clientShutdown(JackClient client) {
         System.out.println("Java MIDI thru test shutdown");
     }
+
+    /**
+     * Access to the input and output MIDI buffers for the current cycle. Each
+     * input has its own current event.
+     */
+    interface Ports {
+
+        int getInputCount();
+
+        int getOutputCount();
+
+        void clearOutputs() throws JackException;
+
+        int getEventCount(int input) throws JackException;
+
+        /**
+         * Load the event at the given index as the input's current event.
+         */
+        void loadEvent(int input, int index) throws JackException;
+
+        /**
+         * Frame offset of the input's current event.
+         */
+        int eventTime(int input);
+
+        /**
+         * Size of the input's current event.
+         */
+        int eventSize(int input);
+
+        /**
+         * Read the input's current event into the provided array.
+         */
+        void readEvent(int input, byte[] data);
+
+        void writeEvent(int output, int time, byte[] data, int size) throws JackException;
+
+    }
+
+    private static class JackPorts implements Ports {
+
+        private final JackPort[] inputPorts;
+        private final JackPort[] outputPorts;
+        private final JackMidi.Event[] midiEvents;
+
+        private JackPorts(JackPort[] inputPorts, JackPort[] outputPorts) {
+            this.inputPorts = inputPorts;
+            this.outputPorts = outputPorts;
+            this.midiEvents = new JackMidi.Event[inputPorts.length];
+            for (int i = 0; i < midiEvents.length; i++) {
+                midiEvents[i] = new JackMidi.Event();
+            }
+        }
+
+        @Override
+        public int getInputCount() {
+            return inputPorts.length;
+        }
+
+        @Override
+        public int getOutputCount() {
+            return outputPorts.length;
+        }
+
+        @Override
+        public void clearOutputs() throws JackException {
+            for (JackPort port : outputPorts) {
+                JackMidi.clearBuffer(port);
+            }
+        }
+
+        @Override
+        public int getEventCount(int input) throws JackException {
+            return JackMidi.getEventCount(inputPorts[input]);
+        }
+
+        @Override
+        public void loadEvent(int input, int index) throws JackException {
+            JackMidi.eventGet(midiEvents[input], inputPorts[input], index);
+        }
+
+        @Override
+        public int eventTime(int input) {
+            return midiEvents[input].time();
+        }
+
+        @Override
+        public int eventSize(int input) {
+            return midiEvents[input].size();
+        }
+
+        @Override
+        public void readEvent(int input, byte[] data) {
+            midiEvents[input].read(data);
+        }
+
+        @Override
+        public void writeEvent(int output, int time, byte[] data, int size) throws JackException {
+            JackMidi.eventWrite(outputPorts[output], time, data, size);
+        }
+
+    }
 }
@@ -0,0 +1,276 @@
+package org.jaudiolibs.examples;
+
+import java.util.Arrays;
+
+/**
+ * A polyphonic synth Pipe for Pipes Graphs, played from a {@link MidiInput}
+ * with sample accurate timing.
+ *
+ * A Graph can only change its units between blocks, so notes played through
+ * Properties or a Clock start on a block boundary. This Pipe renders its own
+ * voices, each a {@link WavetableOscillator} with an attack and release
+ * envelope, and splits the block at the frame of each MIDI event. Timing
+ * accuracy is therefore independent of the buffer size.
+ *
+ * The MIDI client and the Graph run in separate JACK cycles with their own
+ * frame counters. On the first block after MIDI input starts, the offset
+ * between the two counters is fixed, rounded to a whole JACK period, with one
+ * period of latency added so that every event from the MIDI client's cycle is
+ * still in the future when it is played. Latency is then constant - one or two
+ * periods depending on the order JACK runs the clients in.
+ *
+ * Any input is replaced.
+ */
+public final class MidiVoices extends BlockPipe {
+
+    private final static int IDLE = 0;
+    private final static int ATTACK = 1;
+    private final static int SUSTAIN = 2;
+    private final static int RELEASE = 3;
+
+    private final static float SILENCE = 0.0001f;
+
+    private final MidiInput input;
+    private final ParameterQueue events;
+    private final Voice[] voices;
+
+    private volatile double attack = 0.005;
+    private volatile double release = 0.3;
+    private volatile float gain = 0.2f;
+    private volatile PitchTable pitches = PitchTable.standard();
+
+    private float[] scratch;
+    private float sampleRate;
+    private float attackStep;
+    private float releaseCoeff;
+    private long frame;
+    private long offset;
+    private boolean anchored;
+    private long noteCount;
+
+    /**
+     * Create a synth with the given number of voices and a band limited saw
+     * wave.
+     *
+     * @param input MIDI input
+     * @param voiceCount number of voices
+     */
+    public MidiVoices(MidiInput input, int voiceCount) {
+        if (voiceCount < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.input = input;
+        this.events = input.events();
+        this.voices = new Voice[voiceCount];
+        for (int i = 0; i < voiceCount; i++) {
+            voices[i] = new Voice();
+        }
+        this.scratch = new float[0];
+    }
+
+    /**
+     * Attack time in seconds. Applies from the next block.
+     *
+     * @param attack attack time
+     * @return this
+     */
+    public MidiVoices attack(double attack) {
+        this.attack = Math.max(0, attack);
+        return this;
+    }
+
+    /**
+     * Release time in seconds, to -80dB. Applies from the next block.
+     *
+     * @param release release time
+     * @return this
+     */
+    public MidiVoices release(double release) {
+        this.release = Math.max(0, release);
+        return this;
+    }
+
+    public MidiVoices gain(double gain) {
+        this.gain = (float) gain;
+        return this;
+    }
+
+    public double gain() {
+        return gain;
+    }
+
+    /**
+     * Tuning for new notes. Applies from the next note on.
+     *
+     * @param pitches pitch table
+     * @return this
+     */
+    public MidiVoices pitches(PitchTable pitches) {
+        if (pitches == null) {
+            throw new NullPointerException();
+        }
+        this.pitches = pitches;
+        return this;
+    }
+
+    public PitchTable pitches() {
+        return pitches;
+    }
+
+    @Override
+    void processBlock(float[] data, int size, float sampleRate) {
+        if (sampleRate != this.sampleRate) {
+            this.sampleRate = sampleRate;
+            for (Voice voice : voices) {
+                voice.osc.setSampleRate(sampleRate);
+            }
+        }
+        if (scratch.length < size) {
+            scratch = new float[size];
+        }
+        double a = attack * sampleRate;
+        attackStep = a < 1 ? 1 : (float) (1 / a);
+        double r = release * sampleRate;
+        releaseCoeff = r < 1 ? 0 : (float) Math.pow(SILENCE, 1 / r);
+
+        if (!anchored) {
+            int period = input.period();
+            if (period > 0) {
+                offset = frame - (frame % period) - input.cycleStart() + period;
+                anchored = true;
+            }
+        }
+
+        Arrays.fill(data, 0, size, 0);
+        int pos = 0;
+        if (anchored) {
+            // queue times are in MIDI client frames
+            events.beginPeriod(frame - offset, size);
+            while (events.next()) {
+                int eventOffset = events.offset();
+                render(data, pos, eventOffset - pos);
+                pos = eventOffset;
+                handle(events.parameter(), (int) events.value());
+            }
+        }
+        render(data, pos, size - pos);
+        frame += size;
+    }
+
+    private void render(float[] data, int pos, int length) {
+        if (length <= 0) {
+            return;
+        }
+        for (Voice voice : voices) {
+            if (voice.stage != IDLE) {
+                voice.render(data, pos, length);
+            }
+        }
+    }
+
+    private void handle(int message, int value) {
+        int status = message >> 8;
+        int channel = status & 0xF;
+        int data1 = message & 0x7F;
+        switch (status & 0xF0) {
+            case 0x90:
+                if (value > 0) {
+                    noteOn(channel, data1, value);
+                } else {
+                    noteOff(channel, data1);
+                }
+                break;
+            case 0x80:
+                noteOff(channel, data1);
+                break;
+            case 0xB0:
+                // all sound off and all notes off
+                if (data1 == 120 || data1 == 123) {
+                    for (Voice voice : voices) {
+                        if (voice.channel == channel && voice.stage != IDLE) {
+                            voice.stage = data1 == 120 ? IDLE : RELEASE;
+                        }
+                    }
+                }
+                break;
+        }
+    }
+
+    private void noteOn(int channel, int note, int velocity) {
+        Voice voice = null;
+        for (Voice v : voices) {
+            if (v.stage == IDLE) {
+                voice = v;
+                break;
+            }
+        }
+        if (voice == null) {
+            voice = voices[0];
+            for (Voice v : voices) {
+                if (v.started < voice.started) {
+                    voice = v;
+                }
+            }
+        }
+        float v = velocity / 127f;
+        voice.channel = channel;
+        voice.note = note;
+        voice.peak = v * v * gain;
+        voice.started = ++noteCount;
+        voice.osc.setFrequency(pitches.frequency(note));
+        if (voice.stage == IDLE) {
+            voice.level = 0;
+            voice.osc.setPhase(0);
+        }
+        voice.stage = ATTACK;
+    }
+
+    private void noteOff(int channel, int note) {
+        for (Voice voice : voices) {
+            if (voice.note == note && voice.channel == channel
+                    && (voice.stage == ATTACK || voice.stage == SUSTAIN)) {
+                voice.stage = RELEASE;
+            }
+        }
+    }
+
+    private class Voice {
+
+        private final WavetableOscillator osc;
+        private int stage;
+        private int channel;
+        private int note;
+        private float level;
+        private float peak;
+        private long started;
+
+        private Voice() {
+            osc = new WavetableOscillator(Wavetable.saw());
+        }
+
+        private void render(float[] data, int pos, int length) {
+            float[] buf = scratch;
+            osc.process(buf, 0, length);
+            float lev = level;
+            for (int i = 0; i < length; i++) {
+                if (stage == ATTACK) {
+                    lev += attackStep * peak;
+                    if (lev >= peak) {
+                        lev = peak;
+                        stage = SUSTAIN;
+                    }
+                } else if (stage == RELEASE) {
+                    lev *= releaseCoeff;
+                    if (lev < SILENCE * peak || lev == 0) {
+                        lev = 0;
+                        stage = IDLE;
+                    }
+                }
+                data[pos + i] += buf[i] * lev;
+            }
+            level = lev;
+        }
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.jaudiolibs.examples;
+
+/**
+ * A noise source Pipe for Pipes Graphs, backed by a {@link NoiseGenerator}.
+ *
+ * A replacement for fn(d -> Math.random() * 2 - 1) that avoids the shared,
+ * synchronised Random behind Math.random() and generates a whole block per
+ * period. Any input is replaced.
+ */
+public final class Noise extends BlockPipe {
+
+    private final NoiseGenerator generator;
+
+    /**
+     * Create a white noise source with a unique seed.
+     */
+    public Noise() {
+        generator = new NoiseGenerator();
+    }
+
+    public Noise type(NoiseGenerator.Type type) {
+        generator.type(type);
+        return this;
+    }
+
+    public NoiseGenerator.Type type() {
+        return generator.type();
+    }
+
+    /**
+     * Reseed for reproducible output.
+     *
+     * @param seed seed
+     * @return this
+     */
+    public Noise seed(long seed) {
+        generator.seed(seed);
+        return this;
+    }
+
+    public Noise gain(double gain) {
+        generator.gain((float) gain);
+        return this;
+    }
+
+    public double gain() {
+        return generator.gain();
+    }
+
+    @Override
+    void processBlock(float[] data, int size, float sampleRate) {
+        generator.process(data, size);
+    }
+
+}
@@ -0,0 +1,177 @@
+package org.jaudiolibs.examples;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * White, pink or brown noise from a per-instance xorshift64* generator.
+ *
+ * Unlike Math.random() there is no shared state between instances, so
+ * generators on different threads or in different graphs never contend, and
+ * a fixed seed gives the same output on every run. A whole block is generated
+ * per call without allocation. Instances are not thread safe.
+ */
+public class NoiseGenerator implements BlockProcessor {
+
+    /**
+     * Noise colour.
+     */
+    public static enum Type {
+        /**
+         * Flat spectrum.
+         */
+        WHITE,
+        /**
+         * -3dB per octave.
+         */
+        PINK,
+        /**
+         * -6dB per octave.
+         */
+        BROWN
+    }
+
+    private final static AtomicLong SEEDS = new AtomicLong(System.nanoTime());
+
+    private Type type;
+    private float gain;
+    private long state;
+
+    // pink filter state
+    private float b0, b1, b2, b3, b4, b5, b6;
+    // brown integrator state
+    private float brown;
+
+    /**
+     * Create a white noise generator with a unique seed.
+     */
+    public NoiseGenerator() {
+        this(SEEDS.addAndGet(0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * Create a white noise generator with the given seed.
+     *
+     * @param seed seed
+     */
+    public NoiseGenerator(long seed) {
+        type = Type.WHITE;
+        gain = 1;
+        seed(seed);
+    }
+
+    /**
+     * Reseed the generator and reset filter state. The same seed always
+     * produces the same output.
+     *
+     * @param seed seed
+     * @return this
+     */
+    public NoiseGenerator seed(long seed) {
+        // splitmix64 finaliser so that similar seeds give unrelated sequences
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        state = z == 0 ? 0x9E3779B97F4A7C15L : z;
+        b0 = b1 = b2 = b3 = b4 = b5 = b6 = 0;
+        brown = 0;
+        return this;
+    }
+
+    public NoiseGenerator type(Type type) {
+        if (type == null) {
+            throw new NullPointerException();
+        }
+        this.type = type;
+        return this;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public NoiseGenerator gain(float gain) {
+        this.gain = gain;
+        return this;
+    }
+
+    public float gain() {
+        return gain;
+    }
+
+    /**
+     * Fill the buffer with noise, replacing its contents.
+     *
+     * @param buffer output
+     * @param length number of samples
+     */
+    @Override
+    public void process(float[] buffer, int length) {
+        switch (type) {
+            case PINK:
+                pink(buffer, length);
+                break;
+            case BROWN:
+                brown(buffer, length);
+                break;
+            default:
+                white(buffer, length);
+        }
+    }
+
+    private void white(float[] buffer, int length) {
+        long x = state;
+        float g = gain;
+        for (int i = 0; i < length; i++) {
+            x ^= x >>> 12;
+            x ^= x << 25;
+            x ^= x >>> 27;
+            buffer[i] = g * toFloat(x * 0x2545F4914F6CDD1DL);
+        }
+        state = x;
+    }
+
+    private void pink(float[] buffer, int length) {
+        // Paul Kellet's refined pink noise filter
+        long x = state;
+        float g = gain * 0.11f;
+        for (int i = 0; i < length; i++) {
+            x ^= x >>> 12;
+            x ^= x << 25;
+            x ^= x >>> 27;
+            float w = toFloat(x * 0x2545F4914F6CDD1DL);
+            b0 = 0.99886f * b0 + w * 0.0555179f;
+            b1 = 0.99332f * b1 + w * 0.0750759f;
+            b2 = 0.96900f * b2 + w * 0.1538520f;
+            b3 = 0.86650f * b3 + w * 0.3104856f;
+            b4 = 0.55000f * b4 + w * 0.5329522f;
+            b5 = -0.7616f * b5 - w * 0.0168980f;
+            buffer[i] = g * (b0 + b1 + b2 + b3 + b4 + b5 + b6 + w * 0.5362f);
+            b6 = w * 0.115926f;
+        }
+        state = x;
+    }
+
+    private void brown(float[] buffer, int length) {
+        long x = state;
+        float g = gain * 3.5f;
+        float b = brown;
+        for (int i = 0; i < length; i++) {
+            x ^= x >>> 12;
+            x ^= x << 25;
+            x ^= x >>> 27;
+            float w = toFloat(x * 0x2545F4914F6CDD1DL);
+            // leaky integrator keeps the random walk bounded
+            b = (b + 0.02f * w) / 1.02f;
+            buffer[i] = g * b;
+        }
+        brown = b;
+        state = x;
+    }
+
+    private static float toFloat(long random) {
+        // top 24 bits to a float in the range -1 to 1
+        return (random >>> 40) * 0x1.0p-23f - 1f;
+    }
+
+}
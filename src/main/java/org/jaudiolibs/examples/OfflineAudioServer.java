@@ -0,0 +1,488 @@
+package org.jaudiolibs.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+
+/**
+ * An AudioServer that runs a client as fast as possible without any audio
+ * device.
+ *
+ * Inputs are silent. Output is either discarded or rendered to a 32-bit float
+ * WAV file if a {@link Target} extension is found in the configuration. The
+ * server runs until the client returns false from process(), the
+ * {@link Duration} given in the configuration has elapsed, or shutdown() is
+ * called. If a {@link Driver} extension is found, periods are processed one at
+ * a time from the thread calling {@link Driver#step()} instead. Timing
+ * statistics are logged when the server stops and are also available from
+ * {@link #getStats()}.
+ *
+ * Unlike device based servers, the configuration passed in is used exactly as
+ * given.
+ */
+public class OfflineAudioServer implements AudioServer {
+
+    private final static Logger LOG = Logger.getLogger(OfflineAudioServer.class.getName());
+
+    private final AudioConfiguration context;
+    private final AudioClient client;
+    private final File file;
+    private final long maxFrames;
+    private final Driver driver;
+    private final CountDownLatch stopped;
+
+    private volatile boolean active;
+    private volatile boolean shutdown;
+    private volatile Stats stats;
+
+    // period state - confined to the thread calling processPeriod()
+    private int nframes;
+    private int inCount;
+    private int outCount;
+    private float sampleRate;
+    private List<FloatBuffer> inputs;
+    private List<FloatBuffer> outputs;
+    private float[] silence;
+    private FileChannel channel;
+    private ByteBuffer bytes;
+    private long periodNanos;
+    private long startTime;
+    private long frames;
+    private long periods;
+    private long processNanos;
+    private long minNanos;
+    private long maxNanos;
+    private long overruns;
+
+    public OfflineAudioServer(AudioConfiguration context, AudioClient client) {
+        if (context == null || client == null) {
+            throw new NullPointerException();
+        }
+        this.context = context;
+        this.client = client;
+        Target target = context.find(Target.class);
+        file = target == null ? null : target.file;
+        Duration duration = context.find(Duration.class);
+        maxFrames = duration == null ? Long.MAX_VALUE
+                : duration.toFrames(context.getSampleRate());
+        driver = context.find(Driver.class);
+        stopped = new CountDownLatch(1);
+    }
+
+    public void run() throws Exception {
+        if (shutdown) {
+            throw new IllegalStateException("Server already shutdown");
+        }
+        active = true;
+        try {
+            runImpl();
+        } finally {
+            active = false;
+            shutdown = true;
+        }
+    }
+
+    private void runImpl() throws Exception {
+        nframes = context.getMaxBufferSize();
+        inCount = context.getInputChannelCount();
+        outCount = context.getOutputChannelCount();
+        sampleRate = context.getSampleRate();
+        inputs = createBuffers(inCount, nframes);
+        outputs = createBuffers(outCount, nframes);
+        silence = new float[nframes];
+
+        periodNanos = (long) ((nframes * 1000000000.0) / sampleRate);
+        minNanos = Long.MAX_VALUE;
+        boolean configured = false;
+
+        try {
+            if (file != null) {
+                channel = openTarget(file.toPath(), outCount, (int) sampleRate);
+                bytes = ByteBuffer.allocateDirect(nframes * outCount * 4).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            client.configure(context);
+            configured = true;
+            startTime = System.nanoTime();
+            if (driver != null) {
+                // periods are processed by the Driver's thread until shutdown
+                driver.attach(this);
+                stopped.await();
+            } else {
+                while (!shutdown && processPeriod()) {
+                    // keep going
+                }
+            }
+        } finally {
+            if (driver != null) {
+                // don't leave the Driver waiting if configuration failed
+                driver.release();
+            }
+            long wallNanos = System.nanoTime() - startTime;
+            if (configured) {
+                client.shutdown();
+            }
+            if (channel != null) {
+                try {
+                    WavFile.finish(channel, frames * outCount * 4);
+                } finally {
+                    channel.close();
+                }
+            }
+            if (configured) {
+                stats = new Stats(sampleRate, nframes, frames, periods, wallNanos,
+                        processNanos, periods == 0 ? 0 : minNanos, maxNanos, overruns);
+                LOG.log(Level.INFO, "Offline render complete : {0}", stats);
+            }
+        }
+    }
+
+    private static FileChannel openTarget(Path path, int channels, int sampleRate) throws IOException {
+        FileChannel fc = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            WavFile.writeHeader(fc, channels, sampleRate, 32, true);
+        } catch (IOException ex) {
+            fc.close();
+            throw ex;
+        }
+        return fc;
+    }
+
+    private boolean processPeriod() throws IOException {
+        if (frames >= maxFrames) {
+            return false;
+        }
+        for (int i = 0; i < inCount; i++) {
+            FloatBuffer in = inputs.get(i);
+            in.clear();
+            in.put(silence);
+            in.rewind();
+        }
+        for (int i = 0; i < outCount; i++) {
+            outputs.get(i).clear();
+        }
+        // client time runs from a virtual clock rather than wall time
+        long time = startTime + (long) ((frames * 1000000000.0) / sampleRate);
+        long callStart = System.nanoTime();
+        boolean ok = client.process(time, inputs, outputs, nframes);
+        long callTime = System.nanoTime() - callStart;
+
+        processNanos += callTime;
+        minNanos = Math.min(minNanos, callTime);
+        maxNanos = Math.max(maxNanos, callTime);
+        if (callTime > periodNanos) {
+            overruns++;
+        }
+        frames += nframes;
+        periods++;
+
+        if (channel != null) {
+            writeInterleaved(outputs, nframes, bytes);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        return ok;
+    }
+
+    private List<FloatBuffer> createBuffers(int count, int nframes) {
+        List<FloatBuffer> list = new ArrayList<FloatBuffer>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(FloatBuffer.allocate(nframes));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private void writeInterleaved(List<FloatBuffer> outputs, int nframes, ByteBuffer bytes) {
+        bytes.clear();
+        int channels = outputs.size();
+        for (int i = 0; i < nframes; i++) {
+            for (int c = 0; c < channels; c++) {
+                bytes.putFloat(outputs.get(c).get(i));
+            }
+        }
+        bytes.flip();
+    }
+
+    public AudioConfiguration getAudioContext() {
+        return context;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        stopped.countDown();
+    }
+
+    /**
+     * Timing statistics from the last completed run, or null if the server has
+     * not yet finished running.
+     *
+     * @return stats or null
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Configuration extension to render output to a WAV file.
+     */
+    public static final class Target {
+
+        private final File file;
+
+        public Target(File file) {
+            if (file == null) {
+                throw new NullPointerException();
+            }
+            this.file = file;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+    }
+
+    /**
+     * Configuration extension to limit the length of a run, in frames or
+     * seconds.
+     */
+    public static final class Duration {
+
+        private final long frames;
+        private final double seconds;
+
+        private Duration(long frames, double seconds) {
+            this.frames = frames;
+            this.seconds = seconds;
+        }
+
+        /**
+         * Length of this duration in frames at the given sample rate.
+         *
+         * @param sampleRate sample rate
+         * @return frames
+         */
+        public long toFrames(float sampleRate) {
+            return frames >= 0 ? frames : (long) Math.ceil(seconds * sampleRate);
+        }
+
+        public static Duration ofFrames(long frames) {
+            if (frames < 1) {
+                throw new IllegalArgumentException("Duration must be at least one frame");
+            }
+            return new Duration(frames, 0);
+        }
+
+        public static Duration ofSeconds(double seconds) {
+            if (!(seconds > 0)) {
+                throw new IllegalArgumentException("Duration must be positive");
+            }
+            return new Duration(-1, seconds);
+        }
+
+    }
+
+    /**
+     * Configuration extension to process periods on demand from another thread
+     * rather than in a free-running loop. Useful for benchmarking clients that
+     * are created indirectly, eg. by GraphPlayer.
+     *
+     * Once the server is running and the client configured,
+     * {@link #awaitReady(long, TimeUnit)} returns true and {@link #step()} can
+     * be called repeatedly from a single thread.
+     */
+    public static final class Driver {
+
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private volatile OfflineAudioServer server;
+
+        private void attach(OfflineAudioServer server) {
+            this.server = server;
+            ready.countDown();
+        }
+
+        private void release() {
+            ready.countDown();
+        }
+
+        /**
+         * Wait until the server is running and the client is configured.
+         *
+         * @param timeout maximum time to wait
+         * @param unit unit of timeout
+         * @return true if ready, false if the timeout elapsed or the server
+         * failed to start
+         * @throws InterruptedException
+         */
+        public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+            return ready.await(timeout, unit) && server != null;
+        }
+
+        /**
+         * Process a single period on the calling thread.
+         *
+         * @return false if the client or server has stopped
+         * @throws IOException if writing to the render target fails
+         */
+        public boolean step() throws IOException {
+            OfflineAudioServer s = server;
+            if (s == null) {
+                throw new IllegalStateException("Server not ready");
+            }
+            if (s.shutdown) {
+                return false;
+            }
+            if (!s.processPeriod()) {
+                s.shutdown();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Stop the server. The client will be shutdown on the server's thread.
+         */
+        public void shutdown() {
+            OfflineAudioServer s = server;
+            if (s != null) {
+                s.shutdown();
+            }
+        }
+
+    }
+
+    /**
+     * Timing statistics for an offline run.
+     */
+    public static final class Stats {
+
+        private final float sampleRate;
+        private final int bufferSize;
+        private final long frames;
+        private final long periods;
+        private final long wallNanos;
+        private final long processNanos;
+        private final long minProcessNanos;
+        private final long maxProcessNanos;
+        private final long overruns;
+
+        private Stats(float sampleRate, int bufferSize, long frames, long periods,
+                long wallNanos, long processNanos, long minProcessNanos,
+                long maxProcessNanos, long overruns) {
+            this.sampleRate = sampleRate;
+            this.bufferSize = bufferSize;
+            this.frames = frames;
+            this.periods = periods;
+            this.wallNanos = wallNanos;
+            this.processNanos = processNanos;
+            this.minProcessNanos = minProcessNanos;
+            this.maxProcessNanos = maxProcessNanos;
+            this.overruns = overruns;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getPeriods() {
+            return periods;
+        }
+
+        /**
+         * Frames processed per second of wall clock time, including server
+         * overhead such as file writing.
+         *
+         * @return frames per second
+         */
+        public double getFramesPerSecond() {
+            return wallNanos == 0 ? 0 : frames * 1e9 / wallNanos;
+        }
+
+        /**
+         * Wall clock speed relative to realtime, eg. 10 means the client ran
+         * ten times faster than realtime.
+         *
+         * @return realtime factor
+         */
+        public double getRealtimeFactor() {
+            return getFramesPerSecond() / sampleRate;
+        }
+
+        public double getAverageProcessNanos() {
+            return periods == 0 ? 0 : (double) processNanos / periods;
+        }
+
+        public long getMinProcessNanos() {
+            return minProcessNanos;
+        }
+
+        public long getMaxProcessNanos() {
+            return maxProcessNanos;
+        }
+
+        /**
+         * The duration of one period at the configured sample rate and buffer
+         * size - the time budget process() must fit within when running live.
+         *
+         * @return period duration in nanoseconds
+         */
+        public double getPeriodNanos() {
+            return bufferSize * 1e9 / sampleRate;
+        }
+
+        /**
+         * Average process() time as a fraction of the period budget.
+         *
+         * @return average load, where 1 is the whole period
+         */
+        public double getAverageLoad() {
+            return getAverageProcessNanos() / getPeriodNanos();
+        }
+
+        /**
+         * Number of process() calls that took longer than a period.
+         *
+         * @return overrun count
+         */
+        public long getOverruns() {
+            return overruns;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d frames in %d periods of %d at %.0f Hz, "
+                    + "%.0f frames/s (%.1fx realtime), "
+                    + "process() avg %.1f us / min %.1f us / max %.1f us, "
+                    + "period %.1f us, avg load %.2f%%, overruns %d",
+                    frames, periods, bufferSize, sampleRate,
+                    getFramesPerSecond(), getRealtimeFactor(),
+                    getAverageProcessNanos() / 1000, minProcessNanos / 1000.0,
+                    maxProcessNanos / 1000.0, getPeriodNanos() / 1000,
+                    getAverageLoad() * 100, overruns);
+        }
+
+    }
+
+}
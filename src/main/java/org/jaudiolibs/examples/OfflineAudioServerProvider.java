@@ -0,0 +1,33 @@
+package org.jaudiolibs.examples;
+
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+
+/**
+ * AudioServerProvider for the {@link OfflineAudioServer}.
+ *
+ * Registered for lookup through the ServiceLoader mechanism under the library
+ * name "Offline", so it can be used anywhere "JavaSound" or "JACK" can.
+ */
+public class OfflineAudioServerProvider extends AudioServerProvider {
+
+    public final static String LIBRARY_NAME = "Offline";
+
+    @Override
+    public String getLibraryName() {
+        return LIBRARY_NAME;
+    }
+
+    @Override
+    public String getLibraryDescription() {
+        return "Faster than realtime server for rendering and load testing without an audio device.";
+    }
+
+    @Override
+    public AudioServer createServer(AudioConfiguration config, AudioClient client) throws Exception {
+        return new OfflineAudioServer(config, client);
+    }
+
+}
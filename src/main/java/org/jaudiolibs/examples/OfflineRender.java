@@ -0,0 +1,85 @@
+package org.jaudiolibs.examples;
+
+import java.io.File;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+
+/**
+ * Runs one of the example clients on the offline AudioServer, without an audio
+ * device, and reports how much of each period the client uses.
+ *
+ * Usage : OfflineRender [sine|passthrough|graph] [buffersize] [seconds] [file]
+ *
+ * If a file is given the output is rendered to it as a 32-bit float WAV,
+ * otherwise output is discarded.
+ */
+public class OfflineRender {
+
+    public static void main(String[] args) throws Exception {
+
+        String example = args.length > 0 ? args[0] : "sine";
+        int bufferSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 60;
+        File file = args.length > 3 ? new File(args[3]) : null;
+
+        /* The offline server is found through the ServiceLoader in the same
+         * way as the JavaSound and JACK servers.
+         */
+        String lib = OfflineAudioServerProvider.LIBRARY_NAME;
+
+        if ("graph".equals(example)) {
+            /* GraphPlayer looks up the server by library name and passes
+             * extensions through, so the Graph examples need no changes.
+             * The offline server logs its statistics when complete.
+             */
+            GraphPlayer.Builder builder = GraphPlayer.create(new SimpleGraph())
+                    .library(lib)
+                    .ext(OfflineAudioServer.Duration.ofSeconds(seconds));
+            if (file != null) {
+                builder.ext(new OfflineAudioServer.Target(file));
+            }
+            builder.build().start();
+            return;
+        }
+
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
+
+        AudioClient client;
+        int inputs;
+        if ("passthrough".equals(example)) {
+            client = new PassThroughAudioClient();
+            inputs = 2;
+        } else {
+            client = new SineAudioClient();
+            inputs = 0;
+        }
+
+        Object[] exts = file == null
+                ? new Object[]{OfflineAudioServer.Duration.ofSeconds(seconds)}
+                : new Object[]{OfflineAudioServer.Duration.ofSeconds(seconds),
+                    new OfflineAudioServer.Target(file)};
+
+        AudioConfiguration config = new AudioConfiguration(
+                44100.0f, //sample rate
+                inputs, // input channels
+                2, // output channels
+                bufferSize, //buffer size
+                // extensions
+                exts);
+
+        /* The offline server runs as fast as possible, so there is no need for
+         * a high priority Thread - just run it here until it completes.
+         */
+        OfflineAudioServer server = (OfflineAudioServer) provider.createServer(config, client);
+        server.run();
+
+        OfflineAudioServer.Stats stats = server.getStats();
+        System.out.println(stats);
+        System.out.printf("Headroom : %.1f instances of this client per period%n",
+                1 / stats.getAverageLoad());
+
+    }
+
+}
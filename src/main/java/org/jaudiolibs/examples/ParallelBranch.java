@@ -0,0 +1,153 @@
+package org.jaudiolibs.examples;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Pipe whose output is computed by a chain of {@link BlockProcessor}s on a
+ * {@link BranchExecutor} worker thread, in parallel with the rest of the Graph.
+ *
+ * Pipes pulls audio through the graph on a single thread, so independent
+ * branches must be declared explicitly - a branch's processing is defined by
+ * its stages rather than by upstream Pipes. The result of the stages is added
+ * to any input of this Pipe. Stages run on a worker thread, so any parameters
+ * changed from the Graph must be safe to read from another thread.
+ *
+ * Each period the audio thread waits for this branch's result when the Pipe
+ * is pulled, helping to process pending branches while it waits.
+ *
+ * Call {@link #prepare(float, int)} from Graph.init() with the Graph's sample
+ * rate and block size so the stages are prepared and the result buffer
+ * allocated up front. Otherwise this happens on the audio thread in the first
+ * period, and again if the sample rate or a larger block size is seen.
+ */
+public final class ParallelBranch extends BlockPipe {
+
+    private final static int DONE = 0;
+    private final static int PENDING = 1;
+    private final static int RUNNING = 2;
+
+    private final BranchExecutor executor;
+    private final BlockProcessor[] stages;
+    private final AtomicInteger state;
+
+    private volatile long completed;
+
+    // written by the audio thread, read by workers after claiming a job
+    private long scheduled;
+    private int jobSize;
+    private float[] buffer;
+    private float preparedRate;
+    private int preparedSize;
+
+    // audio thread only - the last generation this branch passed on
+    private long consumed;
+
+    /**
+     * Create a branch running the given stages in order.
+     *
+     * @param executor executor to run on
+     * @param stages processing stages
+     */
+    public ParallelBranch(BranchExecutor executor, BlockProcessor... stages) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+        this.stages = Arrays.copyOf(stages, stages.length);
+        this.state = new AtomicInteger(DONE);
+        this.buffer = new float[0];
+        executor.register(this);
+    }
+
+    /**
+     * Prepare the stages and allocate the result buffer for the given sample
+     * rate and maximum block size. Call before the branch is first pulled, eg.
+     * from Graph.init() with sampleRate() and blockSize().
+     *
+     * @param sampleRate sample rate
+     * @param maxBufferSize maximum block size
+     * @return this
+     */
+    public ParallelBranch prepare(float sampleRate, int maxBufferSize) {
+        if (state.get() != DONE) {
+            throw new IllegalStateException("Branch is running");
+        }
+        prepareStages(sampleRate, maxBufferSize);
+        return this;
+    }
+
+    @Override
+    void processBlock(float[] data, int size, float sampleRate) {
+        long gen = executor.beginPeriod(consumed, size, sampleRate);
+        while (true) {
+            int s = state.get();
+            if (s == DONE) {
+                if (completed == gen) {
+                    break;
+                }
+                // missed this generation while previous job was running
+                schedule(gen, size, sampleRate);
+            } else if (s == PENDING) {
+                tryRun();
+            } else {
+                // running on a worker - help with others or spin until done
+                executor.helpOne();
+            }
+        }
+        consumed = gen;
+        float[] out = buffer;
+        for (int i = 0; i < size; i++) {
+            data[i] += out[i];
+        }
+    }
+
+    /**
+     * Schedule a job. Audio thread only. Ignored if the previous job is still
+     * running - it will be rescheduled when this Pipe is next pulled.
+     */
+    void schedule(long gen, int size, float sampleRate) {
+        if (state.get() != DONE) {
+            return;
+        }
+        if (size > preparedSize || sampleRate != preparedRate) {
+            // not prepared for this block, so allocates on the audio thread
+            prepareStages(sampleRate, size);
+        }
+        scheduled = gen;
+        jobSize = size;
+        state.set(PENDING);
+    }
+
+    private void prepareStages(float sampleRate, int size) {
+        preparedSize = Math.max(size, preparedSize);
+        preparedRate = sampleRate;
+        for (BlockProcessor stage : stages) {
+            stage.prepare(sampleRate, preparedSize);
+        }
+        if (buffer.length < preparedSize) {
+            buffer = new float[preparedSize];
+        }
+    }
+
+    /**
+     * Run the job if it is pending. Any thread.
+     *
+     * @return true if the job was run by this call
+     */
+    boolean tryRun() {
+        if (!state.compareAndSet(PENDING, RUNNING)) {
+            return false;
+        }
+        float[] out = buffer;
+        int size = jobSize;
+        Arrays.fill(out, 0, size, 0);
+        for (BlockProcessor stage : stages) {
+            stage.process(out, size);
+        }
+        completed = scheduled;
+        state.set(DONE);
+        return true;
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.jaudiolibs.examples;
+
+import org.jaudiolibs.pipes.Pipe;
+import org.jaudiolibs.pipes.graph.Graph;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+import org.jaudiolibs.pipes.graph.Inject;
+import org.jaudiolibs.pipes.graph.Property;
+
+/**
+ * A Pipes Graph example running independent branches on multiple cores.
+ *
+ * Each branch is a noise source through a resonant filter, processed by a
+ * {@link ParallelBranch} on a {@link BranchExecutor} worker. The branches are
+ * merged on the audio thread once all have completed for the period. Branches
+ * are prepared in init() so nothing is allocated while processing.
+ */
+public class ParallelGraph extends Graph {
+
+    private final static int BRANCHES = 8;
+
+    private final BranchExecutor executor = new BranchExecutor();
+
+    @Inject Property sweep;
+
+    @Override
+    protected void init() {
+        ResonantFilter[] filters = new ResonantFilter[BRANCHES];
+        Pipe[] branches = new Pipe[BRANCHES];
+        for (int i = 0; i < BRANCHES; i++) {
+            ResonantFilter filter = new ResonantFilter().frequency(110 * (i + 1)).resonance(0.9);
+            filters[i] = filter;
+            branches[i] = new ParallelBranch(executor,
+                    new NoiseGenerator(),
+                    filter,
+                    (buffer, length) -> {
+                        for (int s = 0; s < length; s++) {
+                            buffer[s] *= 0.2f;
+                        }
+                    })
+                    .prepare((float) sampleRate(), blockSize());
+        }
+
+        Pipe mix = link(add(branches), tee());
+        link(mix, out(0));
+        link(mix, out(1));
+
+        sweep.animator().whenDone(p -> p.to(1, 0.25).in(4, 0.2).easeInOut());
+        sweep.link(d -> {
+            for (int i = 0; i < BRANCHES; i++) {
+                filters[i].frequency(110 * (i + 1) * (0.5 + d * 4));
+            }
+        });
+
+    }
+
+    public static void main(String[] args) {
+        GraphPlayer.create(new ParallelGraph())
+                //                .library("JACK")
+                //                .ext(new ClientID("Parallel Graph"))
+                //                .ext(Connections.ALL)
+                .build()
+                .start();
+    }
+
+}
@@ -0,0 +1,243 @@
+package org.jaudiolibs.examples;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, preallocated queue of parameter changes from control threads to
+ * an audio thread.
+ *
+ * Any number of control threads may {@link #post(int, double, long)} changes
+ * without locking. Each change is a parameter id, a value and an optional
+ * frame time on the client's own frame clock. At the top of each period the
+ * audio thread calls {@link #beginPeriod(long, int)}, then reads the changes
+ * due in that period in frame order with {@link #next()}, using
+ * {@link #offset()} to split processing at each change for sample accurate
+ * timing. Changes due in later periods are held back until then. The audio
+ * thread side never allocates, blocks or spins.
+ *
+ * <pre>{@code
+ * queue.beginPeriod(frameTime, nframes);
+ * int pos = 0;
+ * while (queue.next()) {
+ *     render(pos, queue.offset());
+ *     apply(queue.parameter(), queue.value());
+ *     pos = queue.offset();
+ * }
+ * render(pos, nframes);
+ * frameTime += nframes;
+ * }</pre>
+ */
+public final class ParameterQueue {
+
+    /**
+     * Frame time for changes to apply at the start of the next period.
+     */
+    public final static long IMMEDIATE = Long.MIN_VALUE;
+
+    private final int capacity;
+    private final int mask;
+
+    // lock-free ring, multiple producers, single consumer
+    private final AtomicLongArray sequence;
+    private final int[] ids;
+    private final double[] values;
+    private final long[] frames;
+    private final AtomicLong tail;
+    private final AtomicLong dropped;
+    private long head;
+
+    // consumer side pending changes, sorted by frame
+    private final int[] pendingIds;
+    private final double[] pendingValues;
+    private final long[] pendingFrames;
+    private int pendingStart;
+    private int pendingEnd;
+
+    // current period and change
+    private long periodStart;
+    private int periodLength;
+    private int currentId;
+    private double currentValue;
+    private int currentOffset;
+
+    /**
+     * Create a queue.
+     *
+     * @param capacity maximum number of queued changes, rounded up to a power
+     * of two
+     */
+    public ParameterQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException();
+        }
+        int cap = 1;
+        while (cap < capacity) {
+            cap <<= 1;
+        }
+        this.capacity = cap;
+        this.mask = cap - 1;
+        sequence = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) {
+            sequence.set(i, i);
+        }
+        ids = new int[cap];
+        values = new double[cap];
+        frames = new long[cap];
+        tail = new AtomicLong();
+        dropped = new AtomicLong();
+        pendingIds = new int[cap];
+        pendingValues = new double[cap];
+        pendingFrames = new long[cap];
+    }
+
+    /**
+     * Post a change to apply at the start of the next period. Any thread.
+     *
+     * @param parameter parameter id
+     * @param value value
+     * @return false if the queue is full and the change was dropped
+     */
+    public boolean post(int parameter, double value) {
+        return post(parameter, value, IMMEDIATE);
+    }
+
+    /**
+     * Post a change to apply at the given frame. Any thread. Changes for
+     * frames that have already passed apply at the start of the next period.
+     *
+     * @param parameter parameter id
+     * @param value value
+     * @param frame frame time on the client's frame clock, or
+     * {@link #IMMEDIATE}
+     * @return false if the queue is full and the change was dropped
+     */
+    public boolean post(int parameter, double value, long frame) {
+        long pos = tail.get();
+        while (true) {
+            long seq = sequence.get((int) pos & mask);
+            long diff = seq - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        int idx = (int) pos & mask;
+        ids[idx] = parameter;
+        values[idx] = value;
+        frames[idx] = frame;
+        sequence.lazySet(idx, pos + 1);
+        return true;
+    }
+
+    /**
+     * Start a period. Audio thread only. Moves posted changes into frame order
+     * ready for {@link #next()}.
+     *
+     * @param start frame time of the first frame in the period
+     * @param length number of frames in the period
+     */
+    public void beginPeriod(long start, int length) {
+        periodStart = start;
+        periodLength = length;
+        if (pendingStart > 0) {
+            int count = pendingEnd - pendingStart;
+            System.arraycopy(pendingIds, pendingStart, pendingIds, 0, count);
+            System.arraycopy(pendingValues, pendingStart, pendingValues, 0, count);
+            System.arraycopy(pendingFrames, pendingStart, pendingFrames, 0, count);
+            pendingStart = 0;
+            pendingEnd = count;
+        }
+        while (pendingEnd < capacity) {
+            int idx = (int) head & mask;
+            if (sequence.get(idx) != head + 1) {
+                break;
+            }
+            insert(ids[idx], values[idx], frames[idx]);
+            sequence.lazySet(idx, head + capacity);
+            head++;
+        }
+    }
+
+    private void insert(int id, double value, long frame) {
+        // insertion sort from the end - keeps posting order for equal frames
+        int i = pendingEnd;
+        while (i > 0 && pendingFrames[i - 1] > frame) {
+            pendingIds[i] = pendingIds[i - 1];
+            pendingValues[i] = pendingValues[i - 1];
+            pendingFrames[i] = pendingFrames[i - 1];
+            i--;
+        }
+        pendingIds[i] = id;
+        pendingValues[i] = value;
+        pendingFrames[i] = frame;
+        pendingEnd++;
+    }
+
+    /**
+     * Advance to the next change due in the current period. Audio thread
+     * only.
+     *
+     * @return true if there is a change, available through
+     * {@link #parameter()}, {@link #value()} and {@link #offset()}
+     */
+    public boolean next() {
+        if (pendingStart == pendingEnd) {
+            return false;
+        }
+        long frame = pendingFrames[pendingStart];
+        if (frame != IMMEDIATE && frame - periodStart >= periodLength) {
+            return false;
+        }
+        currentId = pendingIds[pendingStart];
+        currentValue = pendingValues[pendingStart];
+        currentOffset = frame == IMMEDIATE || frame < periodStart
+                ? 0 : (int) (frame - periodStart);
+        pendingStart++;
+        return true;
+    }
+
+    /**
+     * Parameter id of the current change.
+     *
+     * @return id
+     */
+    public int parameter() {
+        return currentId;
+    }
+
+    /**
+     * Value of the current change.
+     *
+     * @return value
+     */
+    public double value() {
+        return currentValue;
+    }
+
+    /**
+     * Frame offset of the current change within the period.
+     *
+     * @return offset, from 0 to period length - 1
+     */
+    public int offset() {
+        return currentOffset;
+    }
+
+    /**
+     * Number of changes dropped because the queue was full. Any thread.
+     *
+     * @return dropped count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+}
@@ -1,8 +1,8 @@
 package org.jaudiolibs.examples;
 
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ServiceLoader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jaudiolibs.audioservers.AudioClient;
@@ -15,7 +15,11 @@ import org.jaudiolibs.audioservers.ext.Connections;
 /**
  * Basic example for processing audio using the AudioServer API.
  *
- * A simple AudioClient that just copies input to output.
+ * A simple AudioClient that copies input to output through a
+ * {@link RoutingMatrix}. By default each input is copied to the output with the
+ * same index. Unity gain single source routes use a bulk FloatBuffer copy;
+ * other routes are mixed in tight loops over the period. The routing can be
+ * changed while running from any thread.
  *
  * @author Neil C Smith
  */
@@ -24,21 +28,13 @@ public class PassThroughAudioClient implements AudioClient {
     public static void main(String[] args) throws Exception {
 
         /* Search for an AudioServerProvider that matches the required library name
-         * using the ServiceLoader mechanism. This removes the need for a direct
-         * dependency on any particular server implementation.
+         * using the ServiceLoader mechanism - see DeviceDiscovery.provider(). This
+         * removes the need for a direct dependency on any particular server
+         * implementation.
          */
         String lib = "JavaSound"; // or "JACK";
 
-        AudioServerProvider provider = null;
-        for (AudioServerProvider p : ServiceLoader.load(AudioServerProvider.class)) {
-            if (lib.equals(p.getLibraryName())) {
-                provider = p;
-                break;
-            }
-        }
-        if (provider == null) {
-            throw new NullPointerException("No AudioServer found that matches : " + lib);
-        }
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
 
         /* Create an instance of our client - see methods in the implementation 
          * below for more information.
@@ -89,6 +85,57 @@ public class PassThroughAudioClient implements AudioClient {
     }
 
     // AudioClient implementation
+    private final static float RAMP_TIME = 0.005f;
+
+    private volatile RoutingMatrix routing;
+
+    private RoutingMatrix applied;
+    private int inCount;
+    private int outCount;
+    private int rampFrames;
+    private float[][] target;
+    private float[][] current;
+    private float[][] step;
+    private int[][] remaining;
+    private float[][] inputData;
+    private boolean[] inputLoaded;
+    private float[] mix;
+    private float[] silence;
+
+    /**
+     * Create a client routing each input to the output with the same index.
+     */
+    public PassThroughAudioClient() {
+        this(null);
+    }
+
+    /**
+     * Create a client with the given routing. If null, each input is routed to
+     * the output with the same index.
+     *
+     * @param routing initial routing or null
+     */
+    public PassThroughAudioClient(RoutingMatrix routing) {
+        this.routing = routing;
+    }
+
+    /**
+     * Change the routing. May be called from any thread - gain changes are
+     * ramped over a few milliseconds on the audio thread.
+     *
+     * @param routing new routing
+     */
+    public void setRouting(RoutingMatrix routing) {
+        if (routing == null) {
+            throw new NullPointerException();
+        }
+        this.routing = routing;
+    }
+
+    public RoutingMatrix getRouting() {
+        return routing;
+    }
+
     public void configure(AudioConfiguration context) throws Exception {
         /* Check the configuration of the passed in context, and set up any
          * necessary resources. Throw an Exception if the sample rate, buffer
@@ -96,16 +143,131 @@ public class PassThroughAudioClient implements AudioClient {
          * the configuration you passed in to create the server - it will
          * be a best match.
          */
+        inCount = context.getInputChannelCount();
+        outCount = context.getOutputChannelCount();
+        if (routing == null) {
+            routing = RoutingMatrix.identity(inCount, outCount);
+        }
+        rampFrames = Math.max(1, (int) (context.getSampleRate() * RAMP_TIME));
+        target = new float[outCount][inCount];
+        current = new float[outCount][inCount];
+        step = new float[outCount][inCount];
+        remaining = new int[outCount][inCount];
+        inputLoaded = new boolean[inCount];
+        allocateBuffers(context.getMaxBufferSize());
+        // start at the initial routing without ramping
+        applied = routing;
+        for (int o = 0; o < outCount; o++) {
+            for (int i = 0; i < inCount; i++) {
+                target[o][i] = current[o][i] = applied.gain(i, o);
+            }
+        }
+    }
+
+    private void allocateBuffers(int size) {
+        inputData = new float[inCount][size];
+        mix = new float[size];
+        silence = new float[size];
     }
 
     public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
-        int channels = Math.min(inputs.size(), outputs.size());
-        for (int c = 0; c < channels; c++) {
-            outputs.get(c).put(inputs.get(c));
+        if (nframes > mix.length) {
+            allocateBuffers(nframes);
+        }
+        RoutingMatrix r = routing;
+        if (r != applied) {
+            retarget(r);
+        }
+        int ins = Math.min(inCount, inputs.size());
+        int outs = Math.min(outCount, outputs.size());
+        for (int i = 0; i < ins; i++) {
+            inputLoaded[i] = false;
+        }
+        for (int o = 0; o < outs; o++) {
+            FloatBuffer out = outputs.get(o);
+            float[] cur = current[o];
+            float[] tgt = target[o];
+            int[] rem = remaining[o];
+            int active = 0;
+            int source = -1;
+            boolean unity = true;
+            for (int i = 0; i < ins; i++) {
+                if (cur[i] != 0 || tgt[i] != 0) {
+                    active++;
+                    source = i;
+                    unity &= rem[i] == 0 && cur[i] == 1;
+                }
+            }
+            if (active == 0) {
+                out.put(silence, 0, nframes);
+            } else if (active == 1 && unity) {
+                // straight pass through - bulk copy
+                FloatBuffer in = inputs.get(source);
+                out.put(in);
+                in.position(0);
+            } else {
+                mix(inputs, o, ins, nframes);
+                out.put(mix, 0, nframes);
+            }
+        }
+        // clear any outputs beyond the configured channel count
+        for (int o = outs; o < outputs.size(); o++) {
+            outputs.get(o).put(silence, 0, nframes);
         }
         return true;
     }
 
+    private void mix(List<FloatBuffer> inputs, int o, int ins, int nframes) {
+        float[] m = mix;
+        float[] cur = current[o];
+        float[] tgt = target[o];
+        float[] stp = step[o];
+        int[] rem = remaining[o];
+        Arrays.fill(m, 0, nframes, 0);
+        for (int i = 0; i < ins; i++) {
+            if (cur[i] == 0 && tgt[i] == 0) {
+                continue;
+            }
+            float[] src = inputData[i];
+            if (!inputLoaded[i]) {
+                FloatBuffer in = inputs.get(i);
+                in.get(src, 0, nframes);
+                in.position(0);
+                inputLoaded[i] = true;
+            }
+            int f = 0;
+            if (rem[i] > 0) {
+                int n = Math.min(rem[i], nframes);
+                float g = cur[i];
+                float s = stp[i];
+                for (; f < n; f++) {
+                    g += s;
+                    m[f] += g * src[f];
+                }
+                rem[i] -= n;
+                cur[i] = rem[i] == 0 ? tgt[i] : g;
+            }
+            float g = cur[i];
+            for (; f < nframes; f++) {
+                m[f] += g * src[f];
+            }
+        }
+    }
+
+    private void retarget(RoutingMatrix r) {
+        for (int o = 0; o < outCount; o++) {
+            for (int i = 0; i < inCount; i++) {
+                float t = r.gain(i, o);
+                if (t != target[o][i]) {
+                    target[o][i] = t;
+                    step[o][i] = (t - current[o][i]) / rampFrames;
+                    remaining[o][i] = rampFrames;
+                }
+            }
+        }
+        applied = r;
+    }
+
     public void shutdown() {
         //dispose resources.
     }
@@ -0,0 +1,222 @@
+package org.jaudiolibs.examples;
+
+/**
+ * An immutable table of frequencies for the 128 MIDI note numbers, for a
+ * given tuning reference and temperament.
+ *
+ * Note names such as "c#3" or "Bb4" are parsed to note numbers once, with
+ * {@link #noteNumber(String)}, when a Graph or client is initialised. The
+ * number is then the note's id, and {@link #frequency(int)} is a single array
+ * read that is safe to call from the audio thread. Middle C is "c4", note 60,
+ * and "a4" is note 69.
+ *
+ * Tables are cheap to share - the standard 440Hz equal tempered table is
+ * available from {@link #standard()}.
+ */
+public final class PitchTable {
+
+    /**
+     * Scale temperaments, as cent offsets from equal temperament for each
+     * degree of the chromatic scale above the root.
+     */
+    public static enum Temperament {
+
+        EQUAL(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0),
+        /**
+         * Pythagorean tuning from pure fifths, with the wolf fifth from the
+         * major seventh to the augmented fourth.
+         */
+        PYTHAGOREAN(0, -9.775, 3.910, -5.865, 7.820, -1.955, -11.730,
+                1.955, -7.820, 5.865, -3.910, 9.775),
+        /**
+         * Five limit just intonation.
+         */
+        JUST(0, 11.731, 3.910, 15.641, -13.686, -1.955, -9.776,
+                1.955, 13.686, -15.641, -3.910, -11.731),
+        /**
+         * Quarter comma meantone, with pure major thirds.
+         */
+        MEANTONE(0, -24.0, -6.8, 10.3, -13.7, 3.4, -20.5,
+                -3.4, -27.4, -10.3, 6.8, -17.1),
+        /**
+         * Werckmeister III well temperament.
+         */
+        WERCKMEISTER_III(0, -9.775, -7.820, -5.865, -9.775, -1.955, -11.730,
+                -3.910, -7.820, -11.730, -3.910, -7.820);
+
+        private final double[] cents;
+
+        private Temperament(double... cents) {
+            this.cents = cents;
+        }
+
+        /**
+         * Offset from equal temperament in cents of the given degree above
+         * the root.
+         *
+         * @param degree scale degree, 0 to 11
+         * @return cents
+         */
+        public double cents(int degree) {
+            return cents[Math.floorMod(degree, 12)];
+        }
+
+    }
+
+    private final static String[] NAMES = {
+        "c", "c#", "d", "d#", "e", "f", "f#", "g", "g#", "a", "a#", "b"
+    };
+
+    private final static int A4 = 69;
+
+    private final double reference;
+    private final Temperament temperament;
+    private final int root;
+    private final double[] frequencies;
+
+    private PitchTable(double reference, Temperament temperament, int root) {
+        this.reference = reference;
+        this.temperament = temperament;
+        this.root = root;
+        frequencies = new double[128];
+        // keep the reference note exact whatever the temperament
+        double refCents = temperament.cents(A4 - root);
+        for (int n = 0; n < 128; n++) {
+            double cents = (n - A4) * 100 + temperament.cents(n - root) - refCents;
+            frequencies[n] = reference * Math.pow(2, cents / 1200);
+        }
+    }
+
+    /**
+     * The equal tempered table with A4 at 440Hz.
+     *
+     * @return standard table
+     */
+    public static PitchTable standard() {
+        return Standard.TABLE;
+    }
+
+    /**
+     * An equal tempered table.
+     *
+     * @param reference frequency of A4 in Hz
+     * @return table
+     */
+    public static PitchTable equal(double reference) {
+        return create(reference, Temperament.EQUAL, 0);
+    }
+
+    /**
+     * Create a table.
+     *
+     * @param reference frequency of A4 in Hz
+     * @param temperament temperament
+     * @param root pitch class the temperament is built on, 0 for C to 11 for B
+     * @return table
+     */
+    public static PitchTable create(double reference, Temperament temperament, int root) {
+        if (!(reference > 0)) {
+            throw new IllegalArgumentException("Invalid reference : " + reference);
+        }
+        if (temperament == null) {
+            throw new NullPointerException();
+        }
+        if (root < 0 || root > 11) {
+            throw new IllegalArgumentException("Invalid root : " + root);
+        }
+        return new PitchTable(reference, temperament, root);
+    }
+
+    /**
+     * Frequency of a note. Notes outside 0 to 127 are clamped.
+     *
+     * @param note MIDI note number
+     * @return frequency in Hz
+     */
+    public double frequency(int note) {
+        return frequencies[note < 0 ? 0 : note > 127 ? 127 : note];
+    }
+
+    public double getReference() {
+        return reference;
+    }
+
+    public Temperament getTemperament() {
+        return temperament;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * Parse a note name to a MIDI note number. Names are a letter a to g, an
+     * optional sharp (#) or flat (b), and an octave number, eg. "c4" is 60 and
+     * "Bb-1" is 10. Case is ignored.
+     *
+     * @param name note name
+     * @return note number
+     * @throws IllegalArgumentException if the name is invalid or out of range
+     */
+    public static int noteNumber(String name) {
+        String n = name.trim().toLowerCase();
+        if (n.length() < 2) {
+            throw new IllegalArgumentException("Invalid note name : " + name);
+        }
+        int pitch = "c d ef g a b".indexOf(n.charAt(0));
+        if (pitch < 0 || n.charAt(0) == ' ') {
+            throw new IllegalArgumentException("Invalid note name : " + name);
+        }
+        int idx = 1;
+        if (n.charAt(1) == '#') {
+            pitch++;
+            idx++;
+        } else if (n.charAt(1) == 'b') {
+            pitch--;
+            idx++;
+        }
+        int octave;
+        try {
+            octave = Integer.parseInt(n.substring(idx));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid note name : " + name);
+        }
+        int note = (octave + 1) * 12 + pitch;
+        if (note < 0 || note > 127) {
+            throw new IllegalArgumentException("Note out of range : " + name);
+        }
+        return note;
+    }
+
+    /**
+     * Parse note names to MIDI note numbers.
+     *
+     * @param names note names
+     * @return note numbers
+     * @see #noteNumber(String)
+     */
+    public static int[] noteNumbers(String... names) {
+        int[] notes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            notes[i] = noteNumber(names[i]);
+        }
+        return notes;
+    }
+
+    /**
+     * Name of a MIDI note number, using sharps.
+     *
+     * @param note note number
+     * @return name
+     */
+    public static String noteName(int note) {
+        return NAMES[Math.floorMod(note, 12)] + (Math.floorDiv(note, 12) - 1);
+    }
+
+    private static class Standard {
+
+        private final static PitchTable TABLE = equal(440);
+
+    }
+
+}
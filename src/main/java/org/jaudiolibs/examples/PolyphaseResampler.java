@@ -0,0 +1,295 @@
+package org.jaudiolibs.examples;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A streaming multichannel sample rate converter for rational ratios, using a
+ * polyphase windowed sinc filter.
+ *
+ * The ratio between the rates is reduced to L/M. Conceptually the input is
+ * upsampled by L, lowpass filtered and downsampled by M, but only the L
+ * filter phases actually needed are evaluated, each output frame costing one
+ * dot product per channel. The lowpass cutoff is 90% of the lower Nyquist
+ * frequency, with a Kaiser window for around 90dB of stopband attenuation.
+ *
+ * Filter banks are computed once per rate pair and shared by all instances.
+ * Input is written with {@link #write(List, int, int)} and output read with
+ * {@link #read(List, int, int)}. Neither allocates, so both can be called on
+ * the audio thread. Delay is half the filter length, about 32 frames at the
+ * input rate when upsampling.
+ */
+public final class PolyphaseResampler {
+
+    private final static int TAPS = 64;
+    private final static double ROLLOFF = 0.9;
+    private final static double BETA = 8.6;
+    private final static int MAX_PHASES = 4096;
+
+    private final static ConcurrentHashMap<Long, float[][]> BANKS = new ConcurrentHashMap<>();
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int up;
+    private final int down;
+    private final float[][] bank;
+    private final int taps;
+    private final float[][] history;
+    private final int capacity;
+
+    private int position;
+    private int end;
+    private int phase;
+
+    /**
+     * Create a resampler.
+     *
+     * @param inputRate input sample rate
+     * @param outputRate output sample rate
+     * @param channels number of channels
+     * @param maxWrite largest number of frames written at once
+     */
+    public PolyphaseResampler(int inputRate, int outputRate, int channels, int maxWrite) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rates : " + inputRate + " to " + outputRate);
+        }
+        if (channels < 0 || maxWrite < 1) {
+            throw new IllegalArgumentException();
+        }
+        int gcd = gcd(inputRate, outputRate);
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        this.up = outputRate / gcd;
+        this.down = inputRate / gcd;
+        if (up > MAX_PHASES) {
+            throw new IllegalArgumentException("Unsupported ratio : " + inputRate + " to " + outputRate);
+        }
+        this.bank = bank(up, down);
+        this.taps = bank[0].length;
+        // room for the filter and a few writes left unread
+        this.capacity = taps + 4 * maxWrite + down / up + 2;
+        this.history = new float[channels][capacity];
+        clear();
+    }
+
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    /**
+     * Filter length in input frames.
+     *
+     * @return taps
+     */
+    public int getTaps() {
+        return taps;
+    }
+
+    /**
+     * Reset to silence, with the filter delay primed with zeros.
+     */
+    public void clear() {
+        for (float[] h : history) {
+            Arrays.fill(h, 0);
+        }
+        position = 0;
+        end = taps - 1;
+        phase = 0;
+    }
+
+    /**
+     * Number of input frames held and not yet consumed by output.
+     *
+     * @return frames
+     */
+    public int buffered() {
+        return end - position;
+    }
+
+    /**
+     * Append input frames. If more frames are held than there is room for,
+     * the oldest are dropped.
+     *
+     * @param inputs one buffer per channel
+     * @param offset first frame in the buffers
+     * @param count number of frames
+     */
+    public void write(List<FloatBuffer> inputs, int offset, int count) {
+        makeRoom(count);
+        for (int c = 0; c < history.length; c++) {
+            FloatBuffer input = inputs.get(c);
+            float[] h = history[c];
+            for (int i = 0; i < count; i++) {
+                h[end + i] = input.get(offset + i);
+            }
+        }
+        end += count;
+    }
+
+    /**
+     * Append silence.
+     *
+     * @param count number of frames
+     */
+    public void writeSilence(int count) {
+        makeRoom(count);
+        for (float[] h : history) {
+            Arrays.fill(h, end, end + count, 0);
+        }
+        end += count;
+    }
+
+    /**
+     * Number of output frames that can be read from the input written so far.
+     *
+     * @return frames
+     */
+    public int available() {
+        long span = end - taps - position;
+        if (span < 0) {
+            return 0;
+        }
+        // outputs k with floor((phase + k * down) / up) <= span
+        return (int) (((span + 1) * up - phase + down - 1) / down);
+    }
+
+    /**
+     * Number of further input frames needed before the given number of
+     * output frames can be read.
+     *
+     * @param frames output frames
+     * @return input frames, or zero if already available
+     */
+    public int required(int frames) {
+        if (frames < 1) {
+            return 0;
+        }
+        long last = position + ((long) phase + (long) (frames - 1) * down) / up;
+        return (int) Math.max(0, last + taps - end);
+    }
+
+    /**
+     * Read output frames. Fewer than requested are written if there is not
+     * enough input, and the rest of the range is left unchanged.
+     *
+     * @param outputs one buffer per channel
+     * @param offset first frame in the buffers
+     * @param count number of frames
+     * @return frames read
+     */
+    public int read(List<FloatBuffer> outputs, int offset, int count) {
+        int frames = Math.min(count, available());
+        for (int c = 0; c < history.length; c++) {
+            FloatBuffer output = outputs.get(c);
+            float[] h = history[c];
+            int pos = position;
+            int ph = phase;
+            for (int i = 0; i < frames; i++) {
+                float[] coeffs = bank[ph];
+                float sum = 0;
+                for (int j = 0; j < taps; j++) {
+                    sum += h[pos + j] * coeffs[j];
+                }
+                output.put(offset + i, sum);
+                ph += down;
+                while (ph >= up) {
+                    ph -= up;
+                    pos++;
+                }
+            }
+        }
+        long total = phase + (long) frames * down;
+        position += (int) (total / up);
+        phase = (int) (total % up);
+        return frames;
+    }
+
+    private void makeRoom(int count) {
+        if (count > capacity - taps) {
+            throw new IllegalArgumentException("Too many frames : " + count);
+        }
+        if (end + count > capacity) {
+            // move what is left to the start, dropping the oldest if full
+            int keep = Math.min(end - position, capacity - count);
+            int from = end - keep;
+            for (float[] h : history) {
+                System.arraycopy(h, from, h, 0, keep);
+            }
+            position = Math.max(0, position - from);
+            end = keep;
+        }
+    }
+
+    private static float[][] bank(int up, int down) {
+        return BANKS.computeIfAbsent(((long) up << 32) | down, k -> design(up, down));
+    }
+
+    private static float[][] design(int up, int down) {
+        // cutoff in cycles per input frame, lowered below the output Nyquist when downsampling
+        double scale = Math.min(1, (double) up / down);
+        double cutoff = 0.5 * scale * ROLLOFF;
+        // filter length grows as the cutoff falls, for the same transition band
+        int taps = (int) Math.ceil(TAPS / scale);
+        taps += taps & 1;
+        double half = taps / 2.0;
+        double norm = bessel(BETA);
+        float[][] bank = new float[up][taps];
+        for (int p = 0; p < up; p++) {
+            // output p / up of the way between input frames taps / 2 - 1 and taps / 2
+            double offset = (double) p / up;
+            double sum = 0;
+            double[] h = new double[taps];
+            for (int j = 0; j < taps; j++) {
+                double x = j - (half - 1) - offset;
+                double w = x / half;
+                double window = Math.abs(w) >= 1 ? 0 : bessel(BETA * Math.sqrt(1 - w * w)) / norm;
+                h[j] = 2 * cutoff * sinc(2 * cutoff * x) * window;
+                sum += h[j];
+            }
+            // unity gain at DC for every phase
+            for (int j = 0; j < taps; j++) {
+                bank[p][j] = (float) (h[j] / sum);
+            }
+        }
+        return bank;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+
+    // modified Bessel function of the first kind, order 0
+    private static double bessel(double x) {
+        double sum = 1;
+        double term = 1;
+        double q = x * x / 4;
+        for (int k = 1; k < 50; k++) {
+            term *= q / (k * k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+}
@@ -0,0 +1,314 @@
+package org.jaudiolibs.examples;
+
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.audioservers.ext.ClientID;
+import org.jaudiolibs.audioservers.ext.Connections;
+
+/**
+ * An AudioClient that wraps another client and measures its process() calls
+ * against the period deadline, without changes to the wrapped client.
+ *
+ * Each call is timed into a {@link LatencyHistogram}. Calls taking more than
+ * the overrun threshold fraction of their period are counted as overruns, and
+ * gaps between successive time values longer than a period are counted as
+ * missed periods. Recording is allocation and lock free. The statistics can be
+ * read from any thread, and published through JMX with {@link #register()} for
+ * viewing in JConsole or similar.
+ *
+ * The main method runs {@link SineAudioClient} with monitoring, printing a
+ * summary every few seconds.
+ */
+public class ProcessMonitor implements AudioClient, ProcessMonitorMBean {
+
+    public static void main(String[] args) throws Exception {
+
+        String lib = "JavaSound"; // or "JACK";
+
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
+
+        /* Wrap the client and publish it through JMX. The wrapped client
+         * needs no changes.
+         */
+        ProcessMonitor monitor = new ProcessMonitor(new SineAudioClient());
+        monitor.register();
+
+        AudioConfiguration config = new AudioConfiguration(
+                44100.0f, //sample rate
+                0, // input channels
+                2, // output channels
+                256, //buffer size
+                // extensions
+                new ClientID("Monitor"),
+                Connections.OUTPUT);
+
+        final AudioServer server = provider.createServer(config, monitor);
+
+        Thread runner = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.run();
+                } catch (Exception ex) {
+                    Logger.getLogger(ProcessMonitor.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        });
+        runner.setPriority(Thread.MAX_PRIORITY);
+        runner.start();
+
+        // you'll have to kill the program manually!
+        while (true) {
+            Thread.sleep(5000);
+            System.out.println(monitor);
+        }
+
+    }
+
+    private final static double DEFAULT_THRESHOLD = 0.75;
+
+    private final AudioClient client;
+    private final LatencyHistogram histogram;
+
+    private volatile double threshold;
+    private volatile ObjectName registeredName;
+
+    // written by the audio thread only
+    private volatile float sampleRate;
+    private volatile int bufferSize;
+    private volatile long periodNanos;
+    private volatile long periods;
+    private volatile long overruns;
+    private volatile long missed;
+    private volatile long totalNanos;
+    private long lastTime;
+    private long lastPeriodNanos;
+
+    // values at last reset, written by reset() only
+    private volatile long[] baseline;
+    private volatile long basePeriods;
+    private volatile long baseOverruns;
+    private volatile long baseMissed;
+    private volatile long baseTotalNanos;
+
+    /**
+     * Create a monitor for the given client, using an overrun threshold of
+     * 75% of the period.
+     *
+     * @param client client to wrap
+     */
+    public ProcessMonitor(AudioClient client) {
+        this(client, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Create a monitor for the given client.
+     *
+     * @param client client to wrap
+     * @param threshold fraction of the period above which a process() call is
+     * counted as an overrun
+     */
+    public ProcessMonitor(AudioClient client, double threshold) {
+        if (client == null) {
+            throw new NullPointerException();
+        }
+        this.client = client;
+        this.histogram = new LatencyHistogram();
+        setOverrunThreshold(threshold);
+    }
+
+    public void configure(AudioConfiguration context) throws Exception {
+        sampleRate = context.getSampleRate();
+        bufferSize = context.getMaxBufferSize();
+        lastPeriodNanos = 0;
+        client.configure(context);
+    }
+
+    public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
+        long start = System.nanoTime();
+        boolean ret = client.process(time, inputs, outputs, nframes);
+        long duration = System.nanoTime() - start;
+
+        long period = (long) (nframes * 1e9 / sampleRate);
+        histogram.record(duration);
+        totalNanos += duration;
+        periods++;
+        if (duration > period * threshold) {
+            overruns++;
+        }
+        if (lastPeriodNanos > 0) {
+            // allow for jitter - a gap of 1.5 periods or more is a missed period
+            long gap = time - lastTime;
+            if (gap * 2 >= lastPeriodNanos * 3) {
+                missed += Math.round((double) gap / lastPeriodNanos) - 1;
+            }
+        }
+        lastTime = time;
+        lastPeriodNanos = period;
+        periodNanos = period;
+        return ret;
+    }
+
+    public void shutdown() {
+        client.shutdown();
+        unregister();
+    }
+
+    /**
+     * Register with the platform MBean server, named after the wrapped
+     * client's class.
+     *
+     * @throws JMException if registration fails
+     */
+    public void register() throws JMException {
+        register(client.getClass().getSimpleName());
+    }
+
+    /**
+     * Register with the platform MBean server as
+     * org.jaudiolibs.examples:type=ProcessMonitor,name=&lt;name&gt;
+     *
+     * @param name name
+     * @throws JMException if registration fails
+     */
+    public synchronized void register(String name) throws JMException {
+        unregister();
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("org.jaudiolibs.examples:type=ProcessMonitor,name="
+                + ObjectName.quote(name));
+        mbs.registerMBean(this, objectName);
+        registeredName = objectName;
+    }
+
+    /**
+     * Unregister from the platform MBean server, if registered. Called
+     * automatically on shutdown.
+     */
+    public synchronized void unregister() {
+        ObjectName objectName = registeredName;
+        if (objectName == null) {
+            return;
+        }
+        registeredName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ex) {
+            Logger.getLogger(ProcessMonitor.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+
+    public String getClientClass() {
+        return client.getClass().getName();
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public long getPeriods() {
+        return periods - basePeriods;
+    }
+
+    public long getOverruns() {
+        return overruns - baseOverruns;
+    }
+
+    public long getMissedPeriods() {
+        return missed - baseMissed;
+    }
+
+    public double getOverrunThreshold() {
+        return threshold;
+    }
+
+    public void setOverrunThreshold(double threshold) {
+        if (!(threshold > 0)) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        this.threshold = threshold;
+    }
+
+    public long getMeanNanos() {
+        long count = getPeriods();
+        return count == 0 ? 0 : (totalNanos - baseTotalNanos) / count;
+    }
+
+    public long getMaxNanos() {
+        return percentile(100);
+    }
+
+    public long getMedianNanos() {
+        return percentile(50);
+    }
+
+    public long get90thPercentileNanos() {
+        return percentile(90);
+    }
+
+    public long get99thPercentileNanos() {
+        return percentile(99);
+    }
+
+    public long get999thPercentileNanos() {
+        return percentile(99.9);
+    }
+
+    /**
+     * Value at the given percentile of process() times since the last reset,
+     * accurate to about 1.5%.
+     *
+     * @param percentile percentile, 0 to 100
+     * @return time in nanoseconds
+     */
+    public long percentile(double percentile) {
+        return LatencyHistogram.percentile(histogram.snapshot(), baseline, percentile);
+    }
+
+    public double getAverageLoad() {
+        long period = periodNanos;
+        return period == 0 ? 0 : (double) getMeanNanos() / period;
+    }
+
+    public synchronized void reset() {
+        // the audio thread never writes the baseline, so no coordination needed
+        basePeriods = periods;
+        baseOverruns = overruns;
+        baseMissed = missed;
+        baseTotalNanos = totalNanos;
+        baseline = histogram.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        long[] counts = histogram.snapshot();
+        long[] base = baseline;
+        return String.format("%s : %d periods, mean %.1fus, 50%% %.1fus, 99%% %.1fus, "
+                + "99.9%% %.1fus, max %.1fus, period %.1fus, %d overruns, %d missed",
+                client.getClass().getSimpleName(), getPeriods(),
+                getMeanNanos() / 1000.0,
+                LatencyHistogram.percentile(counts, base, 50) / 1000.0,
+                LatencyHistogram.percentile(counts, base, 99) / 1000.0,
+                LatencyHistogram.percentile(counts, base, 99.9) / 1000.0,
+                LatencyHistogram.percentile(counts, base, 100) / 1000.0,
+                getPeriodNanos() / 1000.0,
+                getOverruns(), getMissedPeriods());
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.jaudiolibs.examples;
+
+/**
+ * JMX management interface of {@link ProcessMonitor}. All times are in
+ * nanoseconds, and all counts and statistics are since the last
+ * {@link #reset()}.
+ */
+public interface ProcessMonitorMBean {
+
+    String getClientClass();
+
+    float getSampleRate();
+
+    int getBufferSize();
+
+    /**
+     * Duration of the most recent period, the deadline for process().
+     *
+     * @return period length
+     */
+    long getPeriodNanos();
+
+    long getPeriods();
+
+    /**
+     * Number of process() calls that took longer than the overrun threshold
+     * fraction of their period.
+     *
+     * @return overrun count
+     */
+    long getOverruns();
+
+    /**
+     * Number of periods for which process() was never called, inferred from
+     * gaps between successive time values.
+     *
+     * @return missed period count
+     */
+    long getMissedPeriods();
+
+    double getOverrunThreshold();
+
+    void setOverrunThreshold(double threshold);
+
+    long getMeanNanos();
+
+    long getMaxNanos();
+
+    long getMedianNanos();
+
+    long get90thPercentileNanos();
+
+    long get99thPercentileNanos();
+
+    long get999thPercentileNanos();
+
+    /**
+     * Mean process() time as a fraction of the period.
+     *
+     * @return average load
+     */
+    double getAverageLoad();
+
+    void reset();
+
+}
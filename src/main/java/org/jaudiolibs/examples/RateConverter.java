@@ -0,0 +1,244 @@
+package org.jaudiolibs.examples;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.audioservers.ext.ClientID;
+import org.jaudiolibs.audioservers.ext.Connections;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+
+/**
+ * Runs a client at a fixed sample rate whatever rate the device runs at, so
+ * DSP can be tuned for one rate and isn't run at 96 or 192kHz when the device
+ * is.
+ *
+ * As an AudioClient, RateConverter wraps another client. If the server's rate
+ * matches, the client is used directly. Otherwise the client is configured at
+ * its own rate, with a fixed buffer size of the device buffer converted to
+ * that rate, and inputs and outputs pass through a
+ * {@link PolyphaseResampler}. The client is called whenever more output is
+ * needed, so zero, one or two times per device period. All buffers are
+ * allocated in configure(), so the audio thread doesn't allocate.
+ *
+ * The conversion adds a little over one client buffer of latency, plus the
+ * delay of the filters.
+ *
+ * A GraphPlayer creates its own client, so for a Graph use the
+ * {@link ResampledAudioServerProvider} under the library name "Resampled",
+ * with a {@link Target} extension naming the device library.
+ *
+ * Usage : RateConverter [sine|graph] [client rate] [device rate]
+ */
+public class RateConverter implements AudioClient {
+
+    public static void main(String[] args) throws Exception {
+
+        String example = args.length > 0 ? args[0] : "sine";
+        float rate = args.length > 1 ? Float.parseFloat(args[1]) : 48000;
+        float deviceRate = args.length > 2 ? Float.parseFloat(args[2]) : 44100;
+        String lib = "JavaSound"; // or "JACK";
+
+        if ("graph".equals(example)) {
+            GraphPlayer.create(new SimpleGraph())
+                    .library(ResampledAudioServerProvider.LIBRARY_NAME)
+                    .sampleRate(rate)
+                    .ext(new Target(lib, deviceRate))
+                    .build()
+                    .start();
+            return;
+        }
+
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
+
+        RateConverter converter = new RateConverter(new SineAudioClient(), rate);
+
+        AudioConfiguration config = new AudioConfiguration(
+                deviceRate, //sample rate
+                0, // input channels
+                2, // output channels
+                256, //buffer size
+                // extensions
+                new ClientID("RateConverter"),
+                Connections.OUTPUT);
+
+        final AudioServer server = provider.createServer(config, converter);
+
+        Thread runner = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.run();
+                } catch (Exception ex) {
+                    Logger.getLogger(RateConverter.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        });
+        runner.setPriority(Thread.MAX_PRIORITY);
+        runner.start();
+
+    }
+
+    private final static Logger LOG = Logger.getLogger(RateConverter.class.getName());
+
+    private final AudioClient client;
+    private final float sampleRate;
+
+    private boolean bypass;
+    private int blockSize;
+    private long blockNanos;
+    private PolyphaseResampler input;
+    private PolyphaseResampler output;
+    private List<FloatBuffer> clientInputs;
+    private List<FloatBuffer> clientOutputs;
+    private volatile long underruns;
+
+    /**
+     * Wrap a client.
+     *
+     * @param client client
+     * @param sampleRate sample rate to run the client at
+     */
+    public RateConverter(AudioClient client, float sampleRate) {
+        if (client == null) {
+            throw new NullPointerException();
+        }
+        if (!(sampleRate > 0)) {
+            throw new IllegalArgumentException("Invalid sample rate : " + sampleRate);
+        }
+        this.client = client;
+        this.sampleRate = sampleRate;
+    }
+
+    public void configure(AudioConfiguration context) throws Exception {
+        int deviceRate = Math.round(context.getSampleRate());
+        int clientRate = Math.round(sampleRate);
+        if (deviceRate == clientRate) {
+            bypass = true;
+            client.configure(context);
+            return;
+        }
+        bypass = false;
+        int ins = context.getInputChannelCount();
+        int outs = context.getOutputChannelCount();
+        int deviceSize = context.getMaxBufferSize();
+        blockSize = (int) Math.ceil((double) deviceSize * clientRate / deviceRate);
+        blockNanos = (long) (blockSize * 1e9 / clientRate);
+        input = new PolyphaseResampler(deviceRate, clientRate, ins, deviceSize);
+        output = new PolyphaseResampler(clientRate, deviceRate, outs, blockSize);
+        // start with one block of silence so the client never waits for input
+        input.writeSilence(input.required(blockSize));
+        clientInputs = createBuffers(ins, blockSize);
+        clientOutputs = createBuffers(outs, blockSize);
+        List<Object> exts = new ArrayList<>();
+        for (Object ext : context.findAll(Object.class)) {
+            exts.add(ext);
+        }
+        client.configure(new AudioConfiguration(sampleRate, ins, outs, blockSize, exts.toArray()));
+        LOG.log(Level.FINE, "Converting {0}Hz to {1}Hz, client buffer size {2}",
+                new Object[]{clientRate, deviceRate, blockSize});
+    }
+
+    public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
+        if (bypass) {
+            return client.process(time, inputs, outputs, nframes);
+        }
+        input.write(inputs, 0, nframes);
+        long clientTime = time;
+        while (output.available() < nframes) {
+            int read = input.read(clientInputs, 0, blockSize);
+            if (read < blockSize) {
+                // input fell behind, fill the rest with silence
+                underruns++;
+                input.writeSilence(input.required(blockSize - read));
+                input.read(clientInputs, read, blockSize - read);
+            }
+            // position 0 and limit blockSize, as a server would
+            for (int i = 0; i < clientInputs.size(); i++) {
+                clientInputs.get(i).clear();
+            }
+            for (int i = 0; i < clientOutputs.size(); i++) {
+                clientOutputs.get(i).clear();
+            }
+            if (!client.process(clientTime, clientInputs, clientOutputs, blockSize)) {
+                return false;
+            }
+            output.write(clientOutputs, 0, blockSize);
+            clientTime += blockNanos;
+        }
+        output.read(outputs, 0, nframes);
+        return true;
+    }
+
+    public void shutdown() {
+        client.shutdown();
+    }
+
+    /**
+     * Sample rate the client runs at.
+     *
+     * @return sample rate
+     */
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Number of times the client was given silence because not enough input
+     * had arrived.
+     *
+     * @return underruns
+     */
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    private static List<FloatBuffer> createBuffers(int count, int size) {
+        List<FloatBuffer> buffers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buffers.add(FloatBuffer.allocate(size));
+        }
+        return buffers;
+    }
+
+    /**
+     * Extension for the {@link ResampledAudioServerProvider}, giving the
+     * library and sample rate of the device server.
+     */
+    public static final class Target {
+
+        private final String library;
+        private final float sampleRate;
+
+        /**
+         * Create a target.
+         *
+         * @param library device library name, eg. "JavaSound" or "JACK"
+         * @param sampleRate sample rate to ask the device for
+         */
+        public Target(String library, float sampleRate) {
+            if (library == null) {
+                throw new NullPointerException();
+            }
+            if (!(sampleRate > 0)) {
+                throw new IllegalArgumentException("Invalid sample rate : " + sampleRate);
+            }
+            this.library = library;
+            this.sampleRate = sampleRate;
+        }
+
+        public String getLibrary() {
+            return library;
+        }
+
+        public float getSampleRate() {
+            return sampleRate;
+        }
+
+    }
+
+}
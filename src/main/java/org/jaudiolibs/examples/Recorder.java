@@ -0,0 +1,361 @@
+package org.jaudiolibs.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.audioservers.ext.ClientID;
+import org.jaudiolibs.audioservers.ext.Connections;
+
+/**
+ * An AudioClient that wraps another client and records its outputs to disk.
+ *
+ * After each process() call the output buffers are interleaved into a float
+ * ring allocated on configure. A background thread converts from the ring to
+ * the chosen sample format and writes through a FileChannel, so the audio
+ * thread never touches the disk or allocates. Files ending in .wav get a WAV
+ * header, anything else is written as headerless little-endian raw data. WAV
+ * is limited to 4GB of audio, so use raw for very long recordings.
+ *
+ * If the writer falls behind and the ring is full, whole periods are dropped
+ * and counted rather than blocking. The current and peak ring fill are
+ * available so the ring can be sized for the channel count and disk - a
+ * peak fill close to 1 means the ring is too small.
+ *
+ * The WAV header sizes are rewritten about once a second while recording, so
+ * a file cut short by a crash is still readable up to that point. Each
+ * configure() starts a new recording, replacing the file, after the writer
+ * for any previous recording has finished.
+ *
+ * The main method records {@link SineAudioClient}.
+ *
+ * Usage : Recorder [file] [PCM_16|PCM_24|PCM_32|FLOAT_32]
+ */
+public class Recorder implements AudioClient {
+
+    public static void main(String[] args) throws Exception {
+
+        String lib = "JavaSound"; // or "JACK";
+
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
+
+        File file = new File(args.length > 0 ? args[0] : "recording.wav");
+        SampleFormat format = args.length > 1 ? SampleFormat.valueOf(args[1]) : SampleFormat.PCM_24;
+        Recorder recorder = new Recorder(new SineAudioClient(), file, format);
+
+        AudioConfiguration config = new AudioConfiguration(
+                44100.0f, //sample rate
+                0, // input channels
+                2, // output channels
+                256, //buffer size
+                // extensions
+                new ClientID("Recorder"),
+                Connections.OUTPUT);
+
+        final AudioServer server = provider.createServer(config, recorder);
+
+        Thread runner = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.run();
+                } catch (Exception ex) {
+                    Logger.getLogger(Recorder.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        });
+        runner.setPriority(Thread.MAX_PRIORITY);
+        runner.start();
+
+        // you'll have to kill the program manually! stop the server on exit
+        // so the writer drains the ring and finishes the file
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.shutdown();
+            try {
+                runner.join(2000);
+                recorder.awaitFinished(2000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        while (true) {
+            Thread.sleep(5000);
+            System.out.println(recorder);
+        }
+
+    }
+
+    private final static double DEFAULT_RING_SECONDS = 4;
+    private final static int CHUNK_FRAMES = 4096;
+    private final static long WRITER_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+    private final static long HEADER_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final AudioClient client;
+    private final File file;
+    private final SampleFormat format;
+    private final double ringSeconds;
+    private final boolean wav;
+
+    // ring positions in frames - write by the audio thread, read by the writer
+    private final AtomicLong writePosition;
+    private final AtomicLong readPosition;
+
+    private float[] ring;
+    private int mask;
+    private int channels;
+    private volatile float sampleRate;
+
+    private volatile int capacity;
+    private volatile Thread writer;
+    private volatile boolean stopping;
+    private volatile long dropped;
+    private volatile long peakFill;
+
+    /**
+     * Create a recorder with a ring of four seconds.
+     *
+     * @param client client to record
+     * @param file file to write, replaced if it exists
+     * @param format sample format
+     */
+    public Recorder(AudioClient client, File file, SampleFormat format) {
+        this(client, file, format, DEFAULT_RING_SECONDS);
+    }
+
+    /**
+     * Create a recorder.
+     *
+     * @param client client to record
+     * @param file file to write, replaced if it exists
+     * @param format sample format
+     * @param ringSeconds ring length in seconds, rounded up to a power of two
+     * frames
+     */
+    public Recorder(AudioClient client, File file, SampleFormat format, double ringSeconds) {
+        if (client == null || file == null || format == null) {
+            throw new NullPointerException();
+        }
+        if (!(ringSeconds > 0)) {
+            throw new IllegalArgumentException("Ring length must be positive");
+        }
+        this.client = client;
+        this.file = file;
+        this.format = format;
+        this.ringSeconds = ringSeconds;
+        this.wav = file.getName().toLowerCase().endsWith(".wav");
+        this.writePosition = new AtomicLong();
+        this.readPosition = new AtomicLong();
+    }
+
+    public void configure(AudioConfiguration context) throws Exception {
+        // the writer of a previous recording still reads the old ring
+        Thread previous = writer;
+        if (previous != null) {
+            stopping = true;
+            previous.join();
+        }
+        client.configure(context);
+        sampleRate = context.getSampleRate();
+        channels = context.getOutputChannelCount();
+        int minFrames = Math.max(context.getMaxBufferSize(), (int) Math.ceil(ringSeconds * sampleRate));
+        int frames = Integer.highestOneBit(Math.max(1, minFrames - 1)) << 1;
+        ring = new float[frames * Math.max(1, channels)];
+        mask = frames - 1;
+        capacity = frames;
+        writePosition.set(0);
+        readPosition.set(0);
+        dropped = 0;
+        peakFill = 0;
+        stopping = false;
+
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            if (wav) {
+                WavFile.writeHeader(channel, channels, (int) sampleRate,
+                        format.getBytes() * 8, format == SampleFormat.FLOAT_32);
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        Thread thread = new Thread(() -> writeLoop(channel), "Recorder writer");
+        thread.setDaemon(false);
+        writer = thread;
+        thread.start();
+    }
+
+    public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
+        boolean ret = client.process(time, inputs, outputs, nframes);
+        long w = writePosition.get();
+        long fill = w + nframes - readPosition.get();
+        if (fill > mask + 1) {
+            dropped += nframes;
+            return ret;
+        }
+        float[] r = ring;
+        int chs = channels;
+        for (int c = 0; c < chs; c++) {
+            FloatBuffer buffer = outputs.get(c);
+            for (int i = 0; i < nframes; i++) {
+                r[(int) ((w + i) & mask) * chs + c] = buffer.get(i);
+            }
+        }
+        writePosition.lazySet(w + nframes);
+        if (fill > peakFill) {
+            peakFill = fill;
+        }
+        return ret;
+    }
+
+    public void shutdown() {
+        client.shutdown();
+        // the writer drains the ring and closes the file
+        stopping = true;
+    }
+
+    private void writeLoop(FileChannel channel) {
+        int chs = channels;
+        int frameBytes = chs * format.getBytes();
+        ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_FRAMES * frameBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long dataBytes = 0;
+        long lastHeader = System.nanoTime();
+        try {
+            while (true) {
+                long r = readPosition.get();
+                long available = writePosition.get() - r;
+                if (available == 0) {
+                    if (stopping) {
+                        break;
+                    }
+                    LockSupport.parkNanos(WRITER_WAIT);
+                    continue;
+                }
+                int frames = (int) Math.min(available, CHUNK_FRAMES);
+                bytes.clear();
+                for (int f = 0; f < frames; f++) {
+                    int base = (int) ((r + f) & mask) * chs;
+                    for (int c = 0; c < chs; c++) {
+                        format.put(bytes, ring[base + c]);
+                    }
+                }
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                dataBytes += (long) frames * frameBytes;
+                readPosition.lazySet(r + frames);
+                if (wav && System.nanoTime() - lastHeader > HEADER_INTERVAL) {
+                    WavFile.finish(channel, dataBytes);
+                    lastHeader = System.nanoTime();
+                }
+            }
+            if (wav) {
+                WavFile.finish(channel, dataBytes);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Recorder.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                Logger.getLogger(Recorder.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Wait for the writer to finish after shutdown.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitFinished(long timeout) throws InterruptedException {
+        Thread thread = writer;
+        if (thread != null) {
+            thread.join(timeout);
+        }
+    }
+
+    /**
+     * Ring length in frames, or zero before configure.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Fraction of the ring waiting to be written.
+     *
+     * @return fill, 0 to 1
+     */
+    public double getFill() {
+        int capacity = getCapacity();
+        return capacity == 0 ? 0 : (double) (writePosition.get() - readPosition.get()) / capacity;
+    }
+
+    /**
+     * Highest fraction of the ring used since configure.
+     *
+     * @return peak fill, 0 to 1
+     */
+    public double getPeakFill() {
+        int capacity = getCapacity();
+        return capacity == 0 ? 0 : (double) peakFill / capacity;
+    }
+
+    /**
+     * Number of frames recorded into the ring.
+     *
+     * @return frames
+     */
+    public long getRecordedFrames() {
+        return writePosition.get();
+    }
+
+    /**
+     * Number of frames written to disk.
+     *
+     * @return frames
+     */
+    public long getWrittenFrames() {
+        return readPosition.get();
+    }
+
+    /**
+     * Number of frames dropped because the ring was full.
+     *
+     * @return frames
+     */
+    public long getDroppedFrames() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        float rate = sampleRate;
+        return String.format("%s : %.1fs recorded, %s, ring %.2fs, fill %.1f%%, peak %.1f%%, %d frames dropped",
+                file.getName(), rate == 0 ? 0 : getWrittenFrames() / rate, format,
+                rate == 0 ? 0 : getCapacity() / rate,
+                getFill() * 100, getPeakFill() * 100, getDroppedFrames());
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.jaudiolibs.examples;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+
+/**
+ * AudioServerProvider that runs the client at the configured sample rate
+ * through a {@link RateConverter}, on a server from another library at the
+ * device's own rate.
+ *
+ * Registered for lookup through the ServiceLoader mechanism under the library
+ * name "Resampled", so it can be used anywhere "JavaSound" or "JACK" can,
+ * including with a GraphPlayer. The device library and rate are given by a
+ * {@link RateConverter.Target} extension, by default JavaSound at the
+ * configured rate.
+ */
+public class ResampledAudioServerProvider extends AudioServerProvider {
+
+    public final static String LIBRARY_NAME = "Resampled";
+
+    private final static String DEFAULT_LIBRARY = "JavaSound";
+
+    @Override
+    public String getLibraryName() {
+        return LIBRARY_NAME;
+    }
+
+    @Override
+    public String getLibraryDescription() {
+        return "Runs the client at a fixed sample rate on another server, converting to the device rate.";
+    }
+
+    @Override
+    public AudioServer createServer(AudioConfiguration config, AudioClient client) throws Exception {
+        RateConverter.Target target = config.find(RateConverter.Target.class);
+        String library = target == null ? DEFAULT_LIBRARY : target.getLibrary();
+        float deviceRate = target == null ? config.getSampleRate() : target.getSampleRate();
+        if (LIBRARY_NAME.equals(library)) {
+            throw new IllegalArgumentException("Target library cannot be " + LIBRARY_NAME);
+        }
+        List<Object> exts = new ArrayList<>();
+        for (Object ext : config.findAll(Object.class)) {
+            if (ext != target) {
+                exts.add(ext);
+            }
+        }
+        AudioConfiguration deviceConfig = new AudioConfiguration(deviceRate,
+                config.getInputChannelCount(), config.getOutputChannelCount(),
+                config.getMaxBufferSize(), exts.toArray());
+        return DeviceDiscovery.provider(library).createServer(deviceConfig,
+                new RateConverter(client, config.getSampleRate()));
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.jaudiolibs.examples;
+
+/**
+ * A resonant low pass filter as a {@link BlockProcessor}, using the
+ * topology-preserving transform state variable filter.
+ *
+ * Frequency and resonance may be set from any thread, and are picked up at the
+ * start of the next block.
+ */
+public class ResonantFilter implements BlockProcessor {
+
+    private volatile double frequency;
+    private volatile double resonance;
+
+    private float sampleRate;
+    private double coeffFrequency;
+    private double coeffResonance;
+    private double a1, a2, a3;
+    private double ic1eq, ic2eq;
+
+    public ResonantFilter() {
+        frequency = 1000;
+        sampleRate = 48000;
+        coeffFrequency = -1;
+    }
+
+    /**
+     * Set the cutoff frequency in Hz.
+     *
+     * @param frequency cutoff
+     * @return this
+     */
+    public ResonantFilter frequency(double frequency) {
+        this.frequency = frequency;
+        return this;
+    }
+
+    public double frequency() {
+        return frequency;
+    }
+
+    /**
+     * Set the resonance, from 0 to 1.
+     *
+     * @param resonance resonance
+     * @return this
+     */
+    public ResonantFilter resonance(double resonance) {
+        this.resonance = Math.max(0, Math.min(1, resonance));
+        return this;
+    }
+
+    public double resonance() {
+        return resonance;
+    }
+
+    @Override
+    public void prepare(float sampleRate, int maxBufferSize) {
+        this.sampleRate = sampleRate;
+        coeffFrequency = -1;
+    }
+
+    @Override
+    public void process(float[] buffer, int length) {
+        double f = frequency;
+        double r = resonance;
+        if (f != coeffFrequency || r != coeffResonance) {
+            updateCoefficients(f, r);
+        }
+        double s1 = ic1eq, s2 = ic2eq;
+        for (int i = 0; i < length; i++) {
+            double v3 = buffer[i] - s2;
+            double v1 = a1 * s1 + a2 * v3;
+            double v2 = s2 + a2 * s1 + a3 * v3;
+            s1 = 2 * v1 - s1;
+            s2 = 2 * v2 - s2;
+            buffer[i] = (float) v2;
+        }
+        ic1eq = s1;
+        ic2eq = s2;
+    }
+
+    private void updateCoefficients(double f, double r) {
+        double nyquist = sampleRate / 2;
+        double fc = Math.max(10, Math.min(f, nyquist * 0.99));
+        double g = Math.tan(Math.PI * fc / sampleRate);
+        double k = 2 - 1.98 * r;
+        a1 = 1 / (1 + g * (g + k));
+        a2 = g * a1;
+        a3 = g * a2;
+        coeffFrequency = f;
+        coeffResonance = r;
+    }
+
+}
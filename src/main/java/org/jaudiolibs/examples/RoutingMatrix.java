@@ -0,0 +1,103 @@
+package org.jaudiolibs.examples;
+
+import java.util.Arrays;
+
+/**
+ * An immutable matrix of input to output gains for
+ * {@link PassThroughAudioClient}.
+ *
+ * Changes create a new matrix, which can be handed to a running client from
+ * any thread without locking - the audio thread only ever sees a complete
+ * snapshot.
+ */
+public final class RoutingMatrix {
+
+    private final int inputs;
+    private final int outputs;
+    private final float[] gains;
+
+    private RoutingMatrix(int inputs, int outputs, float[] gains) {
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.gains = gains;
+    }
+
+    /**
+     * Create a matrix with no routes.
+     *
+     * @param inputs number of inputs
+     * @param outputs number of outputs
+     * @return matrix
+     */
+    public static RoutingMatrix empty(int inputs, int outputs) {
+        if (inputs < 0 || outputs < 0) {
+            throw new IllegalArgumentException();
+        }
+        return new RoutingMatrix(inputs, outputs, new float[inputs * outputs]);
+    }
+
+    /**
+     * Create a matrix routing each input to the output with the same index at
+     * unity gain.
+     *
+     * @param inputs number of inputs
+     * @param outputs number of outputs
+     * @return matrix
+     */
+    public static RoutingMatrix identity(int inputs, int outputs) {
+        RoutingMatrix m = empty(inputs, outputs);
+        for (int c = 0, count = Math.min(inputs, outputs); c < count; c++) {
+            m.gains[c * inputs + c] = 1;
+        }
+        return m;
+    }
+
+    /**
+     * Create a copy of this matrix with the gain of one route changed. A gain
+     * of zero removes the route.
+     *
+     * @param input input index
+     * @param output output index
+     * @param gain gain
+     * @return new matrix
+     */
+    public RoutingMatrix withGain(int input, int output, float gain) {
+        checkIndexes(input, output);
+        float[] g = Arrays.copyOf(gains, gains.length);
+        g[output * inputs + input] = gain;
+        return new RoutingMatrix(inputs, outputs, g);
+    }
+
+    /**
+     * Gain of the route from input to output, or zero if the indexes are
+     * outside the matrix.
+     *
+     * @param input input index
+     * @param output output index
+     * @return gain
+     */
+    public float gain(int input, int output) {
+        if (input < 0 || input >= inputs || output < 0 || output >= outputs) {
+            return 0;
+        }
+        return gains[output * inputs + input];
+    }
+
+    public int getInputCount() {
+        return inputs;
+    }
+
+    public int getOutputCount() {
+        return outputs;
+    }
+
+    private void checkIndexes(int input, int output) {
+        if (input < 0 || input >= inputs) {
+            throw new IndexOutOfBoundsException("Invalid input : " + input);
+        }
+        if (output < 0 || output >= outputs) {
+            throw new IndexOutOfBoundsException("Invalid output : " + output);
+        }
+    }
+
+}
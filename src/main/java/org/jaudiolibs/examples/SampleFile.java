@@ -0,0 +1,190 @@
+package org.jaudiolibs.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A WAV or raw audio file mapped into memory, for sample playback without
+ * loading into the Java heap.
+ *
+ * The data is mapped read only in regions of up to 1GB, so files of any size
+ * can be opened almost instantly and the operating system pages data in and
+ * out as needed. Samples are read and converted to float on each access with
+ * absolute reads, so one file can be shared by any number of players and
+ * voices on any thread.
+ *
+ * The first read of a page not yet in memory blocks on the disk. Use
+ * {@link #load(long, long)} on a background thread to page in the start of
+ * each sample, as samplers with disk streaming do.
+ */
+public final class SampleFile {
+
+    private final static long REGION_BYTES = 1L << 30;
+    private final static int PAGE = 4096;
+
+    private final File file;
+    private final int channels;
+    private final float sampleRate;
+    private final SampleFormat format;
+    private final long frames;
+    private final int frameBytes;
+    private final long regionFrames;
+    private final MappedByteBuffer[] regions;
+
+    private SampleFile(File file, FileChannel channel, int channels, float sampleRate,
+            SampleFormat format, long offset, long length) throws IOException {
+        if (channels < 1) {
+            throw new IOException("Invalid channel count " + channels);
+        }
+        this.file = file;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.format = format;
+        this.frameBytes = channels * format.getBytes();
+        this.frames = length / frameBytes;
+        // regions hold whole frames, so a frame never spans two mappings
+        this.regionFrames = REGION_BYTES / frameBytes;
+        int count = (int) ((frames + regionFrames - 1) / regionFrames);
+        regions = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * regionFrames;
+            long size = Math.min(regionFrames, frames - start) * frameBytes;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start * frameBytes, size);
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Map a WAV file.
+     *
+     * @param file file
+     * @return sample file
+     * @throws IOException if the file cannot be read or its format is not
+     * supported
+     */
+    public static SampleFile open(File file) throws IOException {
+        // the mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WavFile.Header header = WavFile.readHeader(channel);
+            return new SampleFile(file, channel, header.channels, header.sampleRate,
+                    header.format, header.dataOffset, header.dataLength);
+        }
+    }
+
+    /**
+     * Map a headerless little-endian raw file, such as one written by
+     * {@link Recorder}.
+     *
+     * @param file file
+     * @param format sample format
+     * @param channels number of interleaved channels
+     * @param sampleRate sample rate
+     * @return sample file
+     * @throws IOException if the file cannot be read
+     */
+    public static SampleFile open(File file, SampleFormat format, int channels, float sampleRate)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new SampleFile(file, channel, channels, sampleRate, format, 0, channel.size());
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public SampleFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Length in frames.
+     *
+     * @return frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Read a sample. Frames outside the file read as silence.
+     *
+     * @param frame frame
+     * @param channel channel
+     * @return sample
+     */
+    public float get(long frame, int channel) {
+        if (frame < 0 || frame >= frames) {
+            return 0;
+        }
+        int region = (int) (frame / regionFrames);
+        int index = (int) (frame - region * regionFrames) * frameBytes
+                + channel * format.getBytes();
+        return format.get(regions[region], index);
+    }
+
+    /**
+     * Read a frame mixed down to mono. Frames outside the file read as
+     * silence.
+     *
+     * @param frame frame
+     * @return mean of all channels
+     */
+    public float getMono(long frame) {
+        if (frame < 0 || frame >= frames) {
+            return 0;
+        }
+        int region = (int) (frame / regionFrames);
+        int index = (int) (frame - region * regionFrames) * frameBytes;
+        MappedByteBuffer buffer = regions[region];
+        int step = format.getBytes();
+        float sum = 0;
+        for (int c = 0; c < channels; c++) {
+            sum += format.get(buffer, index + c * step);
+        }
+        return sum / channels;
+    }
+
+    /**
+     * Page a range of frames into memory by touching each page. Blocks while
+     * reading from disk, so call from a background thread.
+     *
+     * @param start first frame
+     * @param count number of frames
+     */
+    public void load(long start, long count) {
+        long first = Math.max(0, start);
+        long end = Math.min(frames, start + count);
+        while (first < end) {
+            int region = (int) (first / regionFrames);
+            MappedByteBuffer buffer = regions[region];
+            long regionEnd = Math.min(end, (region + 1) * regionFrames);
+            int from = (int) (first - region * regionFrames) * frameBytes;
+            int to = (int) (regionEnd - region * regionFrames) * frameBytes;
+            for (int i = from; i < to; i += PAGE) {
+                buffer.get(i);
+            }
+            buffer.get(to - 1);
+            first = regionEnd;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s : %d channels, %.0fHz, %s, %.1fs", file.getName(),
+                channels, sampleRate, format, frames / sampleRate);
+    }
+
+}
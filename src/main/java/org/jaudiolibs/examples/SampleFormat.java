@@ -0,0 +1,101 @@
+package org.jaudiolibs.examples;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sample formats for audio files, with conversion to and from float samples.
+ *
+ * Buffers passed in must be set to the byte order of the file, little-endian
+ * for WAV. PCM formats are clipped to -1 to 1 when writing.
+ */
+public enum SampleFormat {
+
+    PCM_16(2) {
+        @Override
+        void put(ByteBuffer bytes, float sample) {
+            bytes.putShort((short) Math.round(clip(sample) * 32767));
+        }
+
+        @Override
+        float get(ByteBuffer bytes, int index) {
+            return bytes.getShort(index) * (1f / 32768);
+        }
+    },
+    PCM_24(3) {
+        @Override
+        void put(ByteBuffer bytes, float sample) {
+            int v = Math.round(clip(sample) * 8388607);
+            bytes.put((byte) v);
+            bytes.put((byte) (v >> 8));
+            bytes.put((byte) (v >> 16));
+        }
+
+        @Override
+        float get(ByteBuffer bytes, int index) {
+            int v = (bytes.get(index) & 0xFF)
+                    | (bytes.get(index + 1) & 0xFF) << 8
+                    | bytes.get(index + 2) << 16;
+            return v * (1f / 8388608);
+        }
+    },
+    PCM_32(4) {
+        @Override
+        void put(ByteBuffer bytes, float sample) {
+            bytes.putInt((int) Math.round(clip(sample) * 2147483647.0));
+        }
+
+        @Override
+        float get(ByteBuffer bytes, int index) {
+            return (float) (bytes.getInt(index) * (1.0 / 2147483648.0));
+        }
+    },
+    FLOAT_32(4) {
+        @Override
+        void put(ByteBuffer bytes, float sample) {
+            bytes.putFloat(sample);
+        }
+
+        @Override
+        float get(ByteBuffer bytes, int index) {
+            return bytes.getFloat(index);
+        }
+    };
+
+    private final int bytes;
+
+    private SampleFormat(int bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Bytes per sample.
+     *
+     * @return bytes
+     */
+    public int getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Write a sample at the buffer position.
+     *
+     * @param bytes buffer
+     * @param sample sample
+     */
+    abstract void put(ByteBuffer bytes, float sample);
+
+    /**
+     * Read a sample at an absolute index, without changing the buffer
+     * position, so a buffer can be read by more than one thread.
+     *
+     * @param bytes buffer
+     * @param index byte index
+     * @return sample
+     */
+    abstract float get(ByteBuffer bytes, int index);
+
+    private static float clip(float sample) {
+        return sample < -1 ? -1 : sample > 1 ? 1 : sample;
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.jaudiolibs.examples;
+
+import java.io.File;
+import java.io.IOException;
+import org.jaudiolibs.pipes.Pipe;
+import org.jaudiolibs.pipes.graph.Clock;
+import org.jaudiolibs.pipes.graph.Graph;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+import org.jaudiolibs.pipes.graph.Inject;
+import org.jaudiolibs.pipes.graph.UGen;
+import org.jaudiolibs.pipes.units.Chorus;
+
+/**
+ * A Pipes Graph playing a WAV file at different pitches through a
+ * {@link SamplePlayer}.
+ *
+ * The file is memory mapped rather than loaded, so it may be as large as you
+ * like. The left and right channels have a player each, sharing the one
+ * mapping, and each note starts a voice on both.
+ *
+ * Usage : SampleGraph file.wav
+ */
+public class SampleGraph extends Graph {
+
+    private final static int VOICES = 8;
+
+    private final SampleFile sample;
+
+    @UGen Chorus chorus;
+
+    @Inject Clock clock;
+
+    public SampleGraph(SampleFile sample) {
+        this.sample = sample;
+    }
+
+    @Override
+    protected void init() {
+        int right = sample.getChannels() > 1 ? 1 : 0;
+        SamplePlayer left = new SamplePlayer(sample, VOICES).channel(0);
+        SamplePlayer rightPlayer = new SamplePlayer(sample, VOICES).channel(right);
+
+        link(left, out(0));
+        Pipe r = link(rightPlayer, chorus.depth(0.4).rate(0.5), tee());
+        link(r, out(1));
+
+        /* Notes are played relative to c4, the sample's original pitch.
+         */
+        int[] notes = PitchTable.noteNumbers("c4", "g3", "eb4", "c3", "bb3", "f4");
+        PitchTable pitches = PitchTable.standard();
+        double root = pitches.frequency(PitchTable.noteNumber("c4"));
+
+        clock.bpm(60).on()
+                .map(i -> notes[i % notes.length])
+                .link(n -> {
+                    double rate = pitches.frequency(n) / root;
+                    left.play(rate, 0.5);
+                    rightPlayer.play(rate, 0.5);
+                });
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage : SampleGraph file.wav");
+            return;
+        }
+        SampleFile sample = SampleFile.open(new File(args[0]));
+        System.out.println(sample);
+        // page in the start of the sample before playing
+        sample.load(0, (long) sample.getSampleRate());
+        GraphPlayer.create(new SampleGraph(sample))
+                .build()
+                .start();
+    }
+
+}
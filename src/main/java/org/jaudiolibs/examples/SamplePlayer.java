@@ -0,0 +1,267 @@
+package org.jaudiolibs.examples;
+
+import java.util.Arrays;
+
+/**
+ * A polyphonic sample player Pipe for Pipes Graphs, reading directly from a
+ * memory mapped {@link SampleFile}.
+ *
+ * Each voice plays the sample from a start frame at its own rate, 1 for the
+ * original pitch, with cubic interpolation between frames. Voices read from
+ * the shared mapping and keep only their position and the last four frames
+ * read, so any number of players and voices can share one file without
+ * copying it. When all voices are busy the oldest is stolen, fading out over
+ * 5ms before it starts again, so a stolen note starts slightly late rather
+ * than clicking.
+ *
+ * Voices are started and stopped from the Graph, on the audio thread, eg. in
+ * a Clock link. The output is one channel of the file, or a mono mix of all
+ * channels by default. Any input is replaced.
+ */
+public final class SamplePlayer extends BlockPipe {
+
+    private final static double FADE_TIME = 0.005;
+
+    private final SampleFile sample;
+    private final Voice[] voices;
+
+    private int channel = -1;
+    private long started;
+    private double rateScale;
+    private float fadeStep;
+
+    /**
+     * Create a player.
+     *
+     * @param sample sample file
+     * @param voiceCount number of voices
+     */
+    public SamplePlayer(SampleFile sample, int voiceCount) {
+        if (sample == null) {
+            throw new NullPointerException();
+        }
+        if (voiceCount < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.sample = sample;
+        this.voices = new Voice[voiceCount];
+        for (int i = 0; i < voiceCount; i++) {
+            voices[i] = new Voice();
+        }
+    }
+
+    /**
+     * Channel of the file to play, or -1 for a mono mix of all channels.
+     *
+     * @param channel channel
+     * @return this
+     */
+    public SamplePlayer channel(int channel) {
+        if (channel < -1 || channel >= sample.getChannels()) {
+            throw new IllegalArgumentException("Invalid channel : " + channel);
+        }
+        this.channel = channel;
+        return this;
+    }
+
+    public int channel() {
+        return channel;
+    }
+
+    public SampleFile sample() {
+        return sample;
+    }
+
+    /**
+     * Play the sample from the start.
+     *
+     * @param rate playback rate, 1 for original pitch
+     * @param gain gain
+     * @return this
+     */
+    public SamplePlayer play(double rate, double gain) {
+        return play(rate, gain, 0);
+    }
+
+    /**
+     * Play the sample from the given frame.
+     *
+     * @param rate playback rate, 1 for original pitch
+     * @param gain gain
+     * @param start start frame
+     * @return this
+     */
+    public SamplePlayer play(double rate, double gain, long start) {
+        Voice voice = null;
+        for (Voice v : voices) {
+            if (!v.active) {
+                voice = v;
+                break;
+            }
+        }
+        if (voice == null) {
+            voice = voices[0];
+            for (Voice v : voices) {
+                if (v.started < voice.started) {
+                    voice = v;
+                }
+            }
+        }
+        if (voice.active) {
+            voice.restart(Math.max(0, rate), (float) gain, start);
+        } else {
+            voice.start(Math.max(0, rate), (float) gain, start);
+        }
+        voice.started = ++started;
+        return this;
+    }
+
+    /**
+     * Fade out all playing voices.
+     *
+     * @return this
+     */
+    public SamplePlayer stop() {
+        for (Voice voice : voices) {
+            voice.fading = true;
+            voice.pending = false;
+        }
+        return this;
+    }
+
+    /**
+     * Number of voices playing.
+     *
+     * @return voices
+     */
+    public int activeVoices() {
+        int count = 0;
+        for (Voice voice : voices) {
+            if (voice.active) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    void processBlock(float[] data, int size, float sampleRate) {
+        rateScale = sample.getSampleRate() / sampleRate;
+        fadeStep = (float) (1 / Math.max(1, FADE_TIME * sampleRate));
+        Arrays.fill(data, 0, size, 0);
+        for (Voice voice : voices) {
+            if (voice.active) {
+                voice.render(data, size);
+            }
+        }
+    }
+
+    private float read(long frame) {
+        return channel < 0 ? sample.getMono(frame) : sample.get(frame, channel);
+    }
+
+    private class Voice {
+
+        private boolean active;
+        private boolean fading;
+        private long started;
+        private double rate;
+        private float gain;
+        private float level;
+        // integer and fractional position
+        private long frame;
+        private double fraction;
+        // frames frame - 1 to frame + 2
+        private float y0, y1, y2, y3;
+        // start once faded out, if stolen
+        private boolean pending;
+        private double nextRate;
+        private float nextGain;
+        private long nextStart;
+
+        private void start(double rate, float gain, long start) {
+            this.rate = rate;
+            this.gain = gain;
+            this.level = 1;
+            this.frame = start;
+            this.fraction = 0;
+            this.active = true;
+            this.fading = false;
+            y0 = read(start - 1);
+            y1 = read(start);
+            y2 = read(start + 1);
+            y3 = read(start + 2);
+        }
+
+        private void restart(double rate, float gain, long start) {
+            nextRate = rate;
+            nextGain = gain;
+            nextStart = start;
+            pending = true;
+            fading = true;
+        }
+
+        // start the pending note if any, otherwise become inactive
+        private boolean next() {
+            if (pending) {
+                pending = false;
+                start(nextRate, nextGain, nextStart);
+                return true;
+            }
+            active = false;
+            return false;
+        }
+
+        private void render(float[] data, int size) {
+            double step = rate * rateScale;
+            long end = sample.getFrames();
+            int i = 0;
+            while (i < size) {
+                if (frame >= end) {
+                    if (!next()) {
+                        return;
+                    }
+                    step = rate * rateScale;
+                    continue;
+                }
+                float t = (float) fraction;
+                // 4 point, 3rd order Hermite
+                float c1 = 0.5f * (y2 - y0);
+                float c2 = y0 - 2.5f * y1 + 2 * y2 - 0.5f * y3;
+                float c3 = 0.5f * (y3 - y0) + 1.5f * (y1 - y2);
+                float out = ((c3 * t + c2) * t + c1) * t + y1;
+                if (fading) {
+                    level -= fadeStep;
+                    if (level <= 0) {
+                        if (!next()) {
+                            return;
+                        }
+                        step = rate * rateScale;
+                        continue;
+                    }
+                }
+                data[i++] += out * gain * level;
+
+                fraction += step;
+                if (fraction >= 1) {
+                    long advance = (long) fraction;
+                    fraction -= advance;
+                    frame += advance;
+                    if (advance == 1) {
+                        y0 = y1;
+                        y1 = y2;
+                        y2 = y3;
+                        y3 = read(frame + 2);
+                    } else {
+                        y0 = read(frame - 1);
+                        y1 = read(frame);
+                        y2 = read(frame + 1);
+                        y3 = read(frame + 2);
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -16,47 +16,72 @@ import org.jaudiolibs.pipes.units.Waveform;
 
 /**
  * A simple Pipes Graph example.
+ *
+ * Notes are played through a {@link VoicePool}, so overlapping notes ring on
+ * rather than cutting each other off.
  * 
  * @author Neil C Smith
  */
 public class SimpleGraph extends Graph {
 
+    private final static int VOICES = 16;
+
     @UGen IIRFilter filter;
-    @UGen Osc osc;
     @UGen Chorus chorus;
 
-    @Inject Property sweep, env;
+    @Inject Property sweep;
     @Inject Clock clock;
 
+    VoicePool voices;
+
     @Override
     protected void init() {
         Pipe noise = link(
-                fn(d -> Math.random() * 2 - 1),
+                new Noise(),
                 filter.frequency(110).resonance(15),
                 chorus.depth(1.4).feedback(0.4).rate(8),
                 tee());
+
+        /* All voices are created and linked up front - nothing is allocated
+         * when a note is played.
+         */
+        Osc[] oscs = new Osc[VOICES];
+        Property[] envs = new Property[VOICES];
+        for (int i = 0; i < VOICES; i++) {
+            Osc osc = new Osc().waveform(Waveform.Square).gain(0.);
+            Property env = new Property();
+            addDependent(env);
+            env.link(d -> osc.gain(d * d * d * d));
+            oscs[i] = osc;
+            envs[i] = env;
+        }
+        voices = new VoicePool(VoicePool.Steal.OLDEST, 0.01, oscs, envs);
+
         Pipe syn = link(
-                osc.waveform(Waveform.Square).gain(0.),
+                add(oscs),
                 tee());
-        
+
         link(add(noise, syn), out(0));
         link(add(noise, syn), out(1));
 
         sweep.animator().whenDone(p -> p.to(8000, 65).in(4, 0.2).easeInOut());
         sweep.link(filter::frequency);
 
-        String[] notes = {"a2", "g2", "d2", "a3", "c#3", "e3"};
+        /* Note names are parsed once here - the clock handler only indexes
+         * into arrays.
+         */
+        int[] notes = PitchTable.noteNumbers("a2", "g2", "d2", "a3", "c#3", "e3");
+        PitchTable pitches = PitchTable.standard();
 
         clock.bpm(120).on()
                 .filter(i -> i % 8 < 7)
-                .mapTo(i -> notes[i % notes.length])
+                .map(i -> notes[i % notes.length])
                 .link(n -> {
-                    env.set(0.8).to(0).in(1);
-                    osc.frequency(noteToFrequency(n));
+                    VoicePool.Voice voice = voices.next();
+                    voice.osc().frequency(pitches.frequency(n));
+                    voice.env().set(0.8).to(0).in(1);
                 });
 
-        env.link(d -> osc.gain(d * d * d * d));
-
     }
 
     public static void main(String[] args) {
@@ -28,7 +28,7 @@ public class SimpleGraphNoAnnotations extends Graph {
         IIRFilter filter = new IIRFilter();
 
         Pipe noise = link(
-                fn(d -> Math.random() * 2 - 1),
+                new Noise(),
                 filter.frequency(110).resonance(15),
                 new Chorus().depth(1.4).feedback(0.4).rate(8),
                 tee());
@@ -48,17 +48,18 @@ public class SimpleGraphNoAnnotations extends Graph {
         sweep.animator().whenDone(p -> p.to(8000, 65).in(4, 0.2).easeInOut());
         sweep.link(filter::frequency);
 
-        String[] notes = {"a2", "g2", "d2", "a3", "c#3", "e3"};
+        int[] notes = PitchTable.noteNumbers("a2", "g2", "d2", "a3", "c#3", "e3");
+        PitchTable pitches = PitchTable.standard();
 
         Clock clock = new Clock();
         addDependent(clock);
 
         clock.bpm(120).on()
                 .filter(i -> i % 8 < 7)
-                .mapTo(i -> notes[i % notes.length])
+                .map(i -> notes[i % notes.length])
                 .link(n -> {
                     env.set(0.8).to(0).in(1);
-                    osc.frequency(noteToFrequency(n));
+                    osc.frequency(pitches.frequency(n));
                 });
 
         env.link(d -> osc.gain(d * d * d * d));
@@ -1,8 +1,9 @@
 package org.jaudiolibs.examples;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.nio.FloatBuffer;
 import java.util.List;
-import java.util.ServiceLoader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jaudiolibs.audioservers.AudioClient;
@@ -15,7 +16,12 @@ import org.jaudiolibs.audioservers.ext.Connections;
 /**
  * Basic example for processing audio using the AudioServer API.
  *
- * A simple AudioClient that outputs a sine wave.
+ * A simple AudioClient that outputs a sine wave, using a
+ * {@link WavetableOscillator} reading from the shared sine {@link Wavetable}.
+ *
+ * Frequency and gain can be changed while running from any thread. Changes
+ * are posted to a {@link ParameterQueue} and applied by the audio thread at
+ * the exact frame requested.
  *
  * @author Neil C Smith
  */
@@ -24,26 +30,18 @@ public class SineAudioClient implements AudioClient {
     public static void main(String[] args) throws Exception {
 
         /* Search for an AudioServerProvider that matches the required library name
-         * using the ServiceLoader mechanism. This removes the need for a direct
-         * dependency on any particular server implementation.
+         * using the ServiceLoader mechanism - see DeviceDiscovery.provider(). This
+         * removes the need for a direct dependency on any particular server
+         * implementation.
          */
         String lib = "JavaSound"; // or "JACK";
 
-        AudioServerProvider provider = null;
-        for (AudioServerProvider p : ServiceLoader.load(AudioServerProvider.class)) {
-            if (lib.equals(p.getLibraryName())) {
-                provider = p;
-                break;
-            }
-        }
-        if (provider == null) {
-            throw new NullPointerException("No AudioServer found that matches : " + lib);
-        }
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
 
         /* Create an instance of our client - see methods in the implementation 
          * below for more information.
          */
-        AudioClient client = new SineAudioClient();
+        SineAudioClient client = new SineAudioClient();
 
         /* Create an audio configuration.
          * 
@@ -85,13 +83,87 @@ public class SineAudioClient implements AudioClient {
         // and start processing audio - you'll have to kill the program manually!
         runner.start();
 
+        /* Read new frequencies from the console. The change is posted to the
+         * audio thread without locking, and applied at the start of the next
+         * period.
+         */
+        System.out.println("Enter a frequency in Hz");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            try {
+                client.setFrequency(Double.parseDouble(line.trim()));
+            } catch (NumberFormatException ex) {
+                System.out.println("Not a number : " + line);
+            }
+        }
+
     }
 
     // AudioClient implementation
     private final static float FREQ = 440.0f;
-    private float[] data;
+    private final static int FREQUENCY = 0;
+    private final static int GAIN = 1;
+
+    private final ParameterQueue parameters = new ParameterQueue(256);
+    private WavetableOscillator osc;
     private float[] buffer;
-    private int idx;
+    private volatile long frameTime;
+
+    /**
+     * Change the frequency at the start of the next period. May be called from
+     * any thread.
+     *
+     * @param frequency frequency in Hz
+     * @return false if the change could not be queued
+     */
+    public boolean setFrequency(double frequency) {
+        return parameters.post(FREQUENCY, frequency);
+    }
+
+    /**
+     * Change the frequency at the given frame. May be called from any thread.
+     *
+     * @param frequency frequency in Hz
+     * @param frame frame time, see {@link #getFrameTime()}
+     * @return false if the change could not be queued
+     */
+    public boolean setFrequency(double frequency, long frame) {
+        return parameters.post(FREQUENCY, frequency, frame);
+    }
+
+    /**
+     * Change the gain at the start of the next period. May be called from any
+     * thread.
+     *
+     * @param gain gain
+     * @return false if the change could not be queued
+     */
+    public boolean setGain(double gain) {
+        return parameters.post(GAIN, gain);
+    }
+
+    /**
+     * Change the gain at the given frame. May be called from any thread.
+     *
+     * @param gain gain
+     * @param frame frame time, see {@link #getFrameTime()}
+     * @return false if the change could not be queued
+     */
+    public boolean setGain(double gain, long frame) {
+        return parameters.post(GAIN, gain, frame);
+    }
+
+    /**
+     * Number of frames processed since the client was configured. Changes
+     * scheduled for a frame at least one period beyond this will be applied
+     * sample accurately.
+     *
+     * @return frame time
+     */
+    public long getFrameTime() {
+        return frameTime;
+    }
 
     public void configure(AudioConfiguration context) throws Exception {
         /* Check the configuration of the passed in context, and set up any
@@ -104,11 +176,14 @@ public class SineAudioClient implements AudioClient {
             throw new IllegalArgumentException("SineAudioClient can only work with stereo output");
         }
 
-        int size = (int) (context.getSampleRate() / FREQ);
-        data = new float[size];
-        for (int i = 0; i < size; i++) {
-            data[i] = (float) (0.2 * Math.sin(((double) i / (double) size) * Math.PI * 2.0));
-        }
+        /* The oscillator's phase accumulator is fractional, so the frequency
+         * is exact whatever the sample rate. The table itself is shared.
+         */
+        osc = new WavetableOscillator(Wavetable.sine())
+                .setSampleRate(context.getSampleRate())
+                .setFrequency(FREQ)
+                .setGain(0.2f);
+        frameTime = 0;
     }
 
     public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
@@ -120,15 +195,30 @@ public class SineAudioClient implements AudioClient {
             buffer = new float[nframes];
         }
 
-        // always use nframes as the number of samples to process
-        for (int i = 0; i < nframes; i++) {
-            buffer[i] = (data[idx]);
-            idx++;
-            if (idx == data.length) {
-                idx = 0;
+        /* Apply queued parameter changes, splitting the period so that each
+         * one takes effect at its own frame.
+         */
+        long start = frameTime;
+        parameters.beginPeriod(start, nframes);
+        int pos = 0;
+        while (parameters.next()) {
+            int offset = parameters.offset();
+            osc.process(buffer, pos, offset - pos);
+            pos = offset;
+            switch (parameters.parameter()) {
+                case FREQUENCY:
+                    osc.setFrequency(parameters.value());
+                    break;
+                case GAIN:
+                    osc.setGain((float) parameters.value());
+                    break;
             }
         }
 
+        // always use nframes as the number of samples to process
+        osc.process(buffer, pos, nframes - pos);
+        frameTime = start + nframes;
+
         left.put(buffer);
         right.put(buffer);
 
@@ -137,7 +227,7 @@ public class SineAudioClient implements AudioClient {
 
     public void shutdown() {
         //dispose resources.
-        data = null;
+        osc = null;
     }
 
 }
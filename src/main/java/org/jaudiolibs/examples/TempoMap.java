@@ -0,0 +1,454 @@
+package org.jaudiolibs.examples;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable map of tempo and time signature changes for a transport
+ * timeline, used by {@link JackTransport} as timebase master.
+ *
+ * Changes are placed at the start of a bar. The map is compiled into
+ * segments of constant tempo and meter, each with its start frame, start bar
+ * and cumulative tick count precomputed. A {@link Cursor} finds the bar, beat
+ * and tick of any frame with a binary search over the segments on relocate,
+ * and in constant time while rolling forwards.
+ *
+ * All arithmetic is exact. Tempos are kept to 1/1000 of a beat per minute, so
+ * the ticks per frame of each segment is a ratio of integers, and a cursor
+ * carries the remainder of every frame to tick conversion on to the next. The
+ * position after rolling for any length of time is exactly the position found
+ * by relocating to the same frame, and neither drifts from the frame clock.
+ * Each change starts on the first frame at or after its exact position.
+ *
+ * Like {@link RoutingMatrix}, a new map is built for each change and handed to
+ * the timebase callback as a whole.
+ */
+public final class TempoMap {
+
+    private final int frameRate;
+    private final int ticksPerBeat;
+    private final long[] startFrame;
+    private final long[] startTick;
+    private final int[] startBar;
+    private final long[] milliBpm;
+    private final int[] beatsPerBar;
+    private final int[] beatType;
+    // ticks per frame of each segment is tickNum / tickDen, in lowest terms
+    private final long[] tickNum;
+    private final long[] tickDen;
+
+    private TempoMap(int frameRate, int ticksPerBeat, TreeMap<Integer, Change> changes) {
+        this.frameRate = frameRate;
+        this.ticksPerBeat = ticksPerBeat;
+        int count = changes.size();
+        startFrame = new long[count];
+        startTick = new long[count];
+        startBar = new int[count];
+        milliBpm = new long[count];
+        beatsPerBar = new int[count];
+        beatType = new int[count];
+        tickNum = new long[count];
+        tickDen = new long[count];
+        long frame = 0;
+        long tick = 0;
+        int i = 0;
+        for (Map.Entry<Integer, Change> entry : changes.entrySet()) {
+            int bar = entry.getKey();
+            Change change = entry.getValue();
+            if (i > 0) {
+                // first frame at or after the tick the change falls on
+                long ticks = (long) (bar - startBar[i - 1]) * beatsPerBar[i - 1] * ticksPerBeat;
+                long frames = mulDiv(ticks, tickDen[i - 1], tickNum[i - 1]);
+                if (ticks * tickDen[i - 1] - frames * tickNum[i - 1] != 0) {
+                    frames++;
+                }
+                frame += frames;
+                tick += ticks;
+            }
+            startFrame[i] = frame;
+            startTick[i] = tick;
+            startBar[i] = bar;
+            // unset values carry on from the previous segment
+            milliBpm[i] = change.bpm > 0 ? Math.round(change.bpm * 1000) : milliBpm[i - 1];
+            if (change.beatsPerBar > 0) {
+                beatsPerBar[i] = change.beatsPerBar;
+                beatType[i] = change.beatType;
+            } else {
+                beatsPerBar[i] = beatsPerBar[i - 1];
+                beatType[i] = beatType[i - 1];
+            }
+            long num = milliBpm[i] * ticksPerBeat;
+            long den = 60000L * frameRate;
+            long gcd = gcd(num, den);
+            tickNum[i] = num / gcd;
+            tickDen[i] = den / gcd;
+            i++;
+        }
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Exact floor(a * b / c) for non-negative a and b, and c from 1 to 2^62,
+     * where the result fits in a long. The remainder is a * b - result * c,
+     * which can be computed in wrapping long arithmetic.
+     */
+    static long mulDiv(long a, long b, long c) {
+        if (a < 3037000499L && b < 3037000499L) {
+            return a * b / c;
+        }
+        long q = (a / c) * b;
+        a %= c;
+        q += a * (b / c);
+        b %= c;
+        // binary long multiplication of a * b, reducing modulo c as it goes
+        long hi = 0;
+        long r = 0;
+        for (int bit = 63 - Long.numberOfLeadingZeros(b); bit >= 0; bit--) {
+            hi <<= 1;
+            r <<= 1;
+            if (r >= c) {
+                r -= c;
+                hi++;
+            }
+            if (((b >>> bit) & 1) != 0) {
+                r += a;
+                if (r >= c) {
+                    r -= c;
+                    hi++;
+                }
+            }
+        }
+        return q + hi;
+    }
+
+    /**
+     * A map with a single tempo and meter.
+     *
+     * @param frameRate frame rate
+     * @param bpm beats per minute
+     * @param beatsPerBar beats per bar
+     * @param beatType beat type, eg. 4 for quarter notes
+     * @return tempo map
+     */
+    public static TempoMap constant(int frameRate, double bpm, int beatsPerBar, int beatType) {
+        return builder(frameRate).tempo(1, bpm).meter(1, beatsPerBar, beatType).build();
+    }
+
+    /**
+     * Create a builder. Without other changes the map starts at 120bpm in 4/4
+     * with 1920 ticks per beat.
+     *
+     * @param frameRate frame rate
+     * @return builder
+     */
+    public static Builder builder(int frameRate) {
+        if (frameRate < 1) {
+            throw new IllegalArgumentException("Invalid frame rate : " + frameRate);
+        }
+        return new Builder(frameRate);
+    }
+
+    /**
+     * A builder containing the changes in this map, for adding further
+     * changes.
+     *
+     * @return builder
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder(frameRate).ticksPerBeat(ticksPerBeat);
+        for (int i = 0; i < startBar.length; i++) {
+            int bar = startBar[i] + 1;
+            builder.tempo(bar, milliBpm[i] / 1000.0).meter(bar, beatsPerBar[i], beatType[i]);
+        }
+        return builder;
+    }
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public int getTicksPerBeat() {
+        return ticksPerBeat;
+    }
+
+    /**
+     * Number of segments of constant tempo and meter.
+     *
+     * @return segment count
+     */
+    public int getSegmentCount() {
+        return startFrame.length;
+    }
+
+    /**
+     * Index of the segment containing a frame.
+     *
+     * @param frame frame
+     * @return segment index
+     */
+    public int segmentAt(long frame) {
+        int low = 0;
+        int high = startFrame.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (startFrame[mid] <= frame) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < startFrame.length; i++) {
+            sb.append("bar ").append(startBar[i] + 1)
+                    .append(" (frame ").append(startFrame[i]).append(") : ")
+                    .append(milliBpm[i] / 1000.0).append("bpm ")
+                    .append(beatsPerBar[i]).append('/').append(beatType[i])
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builder of tempo maps. Each change applies from the start of the given
+     * bar until the next change - tempo and meter are set independently.
+     */
+    public static final class Builder {
+
+        private final int frameRate;
+        private final TreeMap<Integer, Change> changes;
+        private int ticksPerBeat;
+
+        private Builder(int frameRate) {
+            this.frameRate = frameRate;
+            this.changes = new TreeMap<>();
+            this.ticksPerBeat = 1920;
+            Change first = change(1);
+            first.bpm = 120;
+            first.beatsPerBar = 4;
+            first.beatType = 4;
+        }
+
+        public Builder ticksPerBeat(int ticksPerBeat) {
+            if (ticksPerBeat < 1 || ticksPerBeat > 1000000) {
+                throw new IllegalArgumentException();
+            }
+            this.ticksPerBeat = ticksPerBeat;
+            return this;
+        }
+
+        /**
+         * Change tempo from the start of a bar. Tempo is rounded to 1/1000 of
+         * a beat per minute.
+         *
+         * @param bar bar number, from 1
+         * @param bpm beats per minute
+         * @return this
+         */
+        public Builder tempo(int bar, double bpm) {
+            if (!(bpm >= 0.001 && bpm <= 100000)) {
+                throw new IllegalArgumentException("Invalid tempo : " + bpm);
+            }
+            change(bar).bpm = bpm;
+            return this;
+        }
+
+        /**
+         * Change time signature from the start of a bar.
+         *
+         * @param bar bar number, from 1
+         * @param beatsPerBar beats per bar
+         * @param beatType beat type, eg. 4 for quarter notes
+         * @return this
+         */
+        public Builder meter(int bar, int beatsPerBar, int beatType) {
+            if (beatsPerBar < 1 || beatType < 1) {
+                throw new IllegalArgumentException("Invalid meter : " + beatsPerBar + "/" + beatType);
+            }
+            Change change = change(bar);
+            change.beatsPerBar = beatsPerBar;
+            change.beatType = beatType;
+            return this;
+        }
+
+        private Change change(int bar) {
+            if (bar < 1) {
+                throw new IllegalArgumentException("Invalid bar : " + bar);
+            }
+            return changes.computeIfAbsent(bar - 1, b -> new Change());
+        }
+
+        public TempoMap build() {
+            return new TempoMap(frameRate, ticksPerBeat, changes);
+        }
+
+    }
+
+    private static final class Change {
+
+        private double bpm;
+        private int beatsPerBar;
+        private int beatType;
+
+    }
+
+    /**
+     * The bar, beat and tick at a frame of a tempo map. Cursors hold no
+     * reference to a map and can be reused across maps without allocation.
+     * Not thread safe.
+     */
+    public static final class Cursor {
+
+        private int segment;
+        private long frame;
+        // ticks since the start of the segment, and the remainder in 1/tickDen
+        private long ticks;
+        private long remainder;
+        private int bar;
+        private int beat;
+        private int tick;
+        private long barStartTick;
+        private double bpm;
+        private int beatsPerBar;
+        private int beatType;
+
+        /**
+         * Move to any frame, searching for its segment.
+         *
+         * @param map tempo map
+         * @param frame frame
+         */
+        public void locate(TempoMap map, long frame) {
+            segment = map.segmentAt(frame);
+            fromSegmentStart(map, frame);
+        }
+
+        /**
+         * Move forwards from the current position. Only moves on to the
+         * following segments, and carries the remainder from the last
+         * position, so the cost is constant while rolling. The map must be the
+         * one last passed to {@link #locate(TempoMap, long)}.
+         *
+         * @param map tempo map
+         * @param frame frame, not before the current frame
+         */
+        public void advance(TempoMap map, long frame) {
+            if (frame < this.frame || segment >= map.startFrame.length) {
+                locate(map, frame);
+                return;
+            }
+            long[] starts = map.startFrame;
+            if (segment + 1 < starts.length && starts[segment + 1] <= frame) {
+                while (segment + 1 < starts.length && starts[segment + 1] <= frame) {
+                    segment++;
+                }
+                fromSegmentStart(map, frame);
+                return;
+            }
+            long num = map.tickNum[segment];
+            long den = map.tickDen[segment];
+            long delta = frame - this.frame;
+            if (delta > (Long.MAX_VALUE - remainder) / num) {
+                fromSegmentStart(map, frame);
+                return;
+            }
+            long r = delta * num + remainder;
+            ticks += r / den;
+            remainder = r % den;
+            this.frame = frame;
+            update(map);
+        }
+
+        private void fromSegmentStart(TempoMap map, long frame) {
+            int s = segment;
+            long rel = Math.max(0, frame - map.startFrame[s]);
+            long num = map.tickNum[s];
+            long den = map.tickDen[s];
+            ticks = mulDiv(rel, num, den);
+            remainder = rel * num - ticks * den;
+            this.frame = frame;
+            update(map);
+        }
+
+        private void update(TempoMap map) {
+            int s = segment;
+            int tpb = map.ticksPerBeat;
+            long ticksPerBar = (long) map.beatsPerBar[s] * tpb;
+            long bars = ticks / ticksPerBar;
+            long inBar = ticks - bars * ticksPerBar;
+            bar = (int) (map.startBar[s] + bars) + 1;
+            beat = (int) (inBar / tpb) + 1;
+            tick = (int) (inBar % tpb);
+            barStartTick = map.startTick[s] + bars * ticksPerBar;
+            bpm = map.milliBpm[s] / 1000.0;
+            beatsPerBar = map.beatsPerBar[s];
+            beatType = map.beatType[s];
+        }
+
+        public long getFrame() {
+            return frame;
+        }
+
+        /**
+         * Bar number, from 1.
+         *
+         * @return bar
+         */
+        public int getBar() {
+            return bar;
+        }
+
+        /**
+         * Beat within the bar, from 1.
+         *
+         * @return beat
+         */
+        public int getBeat() {
+            return beat;
+        }
+
+        /**
+         * Tick within the beat, from 0.
+         *
+         * @return tick
+         */
+        public int getTick() {
+            return tick;
+        }
+
+        /**
+         * Ticks from the start of the map to the start of the current bar.
+         *
+         * @return bar start tick
+         */
+        public long getBarStartTick() {
+            return barStartTick;
+        }
+
+        public double getBeatsPerMinute() {
+            return bpm;
+        }
+
+        public int getBeatsPerBar() {
+            return beatsPerBar;
+        }
+
+        public int getBeatType() {
+            return beatType;
+        }
+
+    }
+
+}
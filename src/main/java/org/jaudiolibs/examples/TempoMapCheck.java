@@ -0,0 +1,204 @@
+package org.jaudiolibs.examples;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Long running check of {@link TempoMap} against an exact reference, without
+ * needing a JACK server.
+ *
+ * Simulates the timebase callback of {@link JackTransport} rolling for a
+ * number of hours at a range of buffer sizes, with occasional relocates, over
+ * a map with awkward tempos and meter changes. Every period the rolling cursor
+ * is compared with a cursor relocated to the same frame, and with bar, beat
+ * and tick computed independently with BigInteger arithmetic. Any difference
+ * is reported and the check exits with a non-zero status.
+ *
+ * For comparison, the drift of a floating point accumulator of ticks per
+ * period is also reported.
+ *
+ * Usage : TempoMapCheck [hours] [sample rate]
+ */
+public class TempoMapCheck {
+
+    private final static int TICKS_PER_BEAT = 1920;
+    private final static int[] PERIODS = {64, 128, 256, 1024, 4096};
+
+    // bar (from 1), bpm, beats per bar, beat type
+    private final static double[][] CHANGES = {
+        {1, 120, 4, 4},
+        {9, 133.333, 4, 4},
+        {17, 97.25, 7, 8},
+        {18, 61.7, 7, 8},
+        {25, 174.001, 3, 4},
+        {33, 0.5, 5, 4},
+        {35, 88.888, 4, 4}
+    };
+
+    private final int frameRate;
+    private final TempoMap map;
+    private final BigInteger[] refStartFrame;
+    private long failures;
+
+    private TempoMapCheck(int frameRate) {
+        this.frameRate = frameRate;
+        TempoMap.Builder builder = TempoMap.builder(frameRate).ticksPerBeat(TICKS_PER_BEAT);
+        for (double[] change : CHANGES) {
+            builder.tempo((int) change[0], change[1])
+                    .meter((int) change[0], (int) change[2], (int) change[3]);
+        }
+        map = builder.build();
+        refStartFrame = new BigInteger[CHANGES.length];
+        refStartFrame[0] = BigInteger.ZERO;
+        for (int i = 1; i < CHANGES.length; i++) {
+            // ceil(ticks / (ticks per frame)) of the previous segment
+            BigInteger ticks = BigInteger.valueOf((long) (CHANGES[i][0] - CHANGES[i - 1][0])
+                    * (long) CHANGES[i - 1][2] * TICKS_PER_BEAT);
+            BigInteger[] qr = ticks.multiply(denominator(i - 1))
+                    .divideAndRemainder(numerator(i - 1));
+            BigInteger frames = qr[1].signum() == 0 ? qr[0] : qr[0].add(BigInteger.ONE);
+            refStartFrame[i] = refStartFrame[i - 1].add(frames);
+        }
+    }
+
+    private BigInteger numerator(int segment) {
+        return BigInteger.valueOf(Math.round(CHANGES[segment][1] * 1000) * TICKS_PER_BEAT);
+    }
+
+    private BigInteger denominator(int segment) {
+        return BigInteger.valueOf(60000L * frameRate);
+    }
+
+    private void check(TempoMap.Cursor cursor, long frame, String label) {
+        BigInteger f = BigInteger.valueOf(frame);
+        int seg = CHANGES.length - 1;
+        while (refStartFrame[seg].compareTo(f) > 0) {
+            seg--;
+        }
+        long ticks = f.subtract(refStartFrame[seg]).multiply(numerator(seg))
+                .divide(denominator(seg)).longValueExact();
+        long ticksPerBar = (long) CHANGES[seg][2] * TICKS_PER_BEAT;
+        long bar = (long) CHANGES[seg][0] + ticks / ticksPerBar;
+        long inBar = ticks % ticksPerBar;
+        int beat = (int) (inBar / TICKS_PER_BEAT) + 1;
+        int tick = (int) (inBar % TICKS_PER_BEAT);
+        if (cursor.getBar() != bar || cursor.getBeat() != beat || cursor.getTick() != tick) {
+            failures++;
+            if (failures <= 10) {
+                System.out.println("FAIL " + label + " at frame " + frame + " : "
+                        + cursor.getBar() + "|" + cursor.getBeat() + "|" + cursor.getTick()
+                        + " expected " + bar + "|" + beat + "|" + tick);
+            }
+        }
+    }
+
+    private void run(double hours) {
+        Random random = new Random(42);
+        TempoMap.Cursor rolling = new TempoMap.Cursor();
+        TempoMap.Cursor located = new TempoMap.Cursor();
+        long end = (long) (hours * 3600 * frameRate);
+        long periods = 0;
+        long relocates = 0;
+        for (int period : PERIODS) {
+            long frame = 0;
+            rolling.locate(map, frame);
+            while (frame < end) {
+                frame += period;
+                if (random.nextInt(100000) == 0) {
+                    frame = (long) (random.nextDouble() * end);
+                    rolling.locate(map, frame);
+                    relocates++;
+                } else {
+                    rolling.advance(map, frame);
+                }
+                located.locate(map, frame);
+                if (rolling.getBar() != located.getBar()
+                        || rolling.getBeat() != located.getBeat()
+                        || rolling.getTick() != located.getTick()
+                        || rolling.getBarStartTick() != located.getBarStartTick()) {
+                    failures++;
+                    if (failures <= 10) {
+                        System.out.println("FAIL rolling and located differ at frame " + frame);
+                    }
+                }
+                check(rolling, frame, "period " + period);
+                periods++;
+            }
+        }
+        System.out.println("Checked " + periods + " periods and " + relocates
+                + " relocates over " + hours + " hours at " + frameRate + "Hz");
+    }
+
+    private void checkBarLines(double hours) {
+        // 120bpm 4/4 has a bar line every 2 seconds, exactly on a frame
+        TempoMap constant = TempoMap.constant(frameRate, 120, 4, 4);
+        TempoMap.Cursor cursor = new TempoMap.Cursor();
+        cursor.locate(constant, 0);
+        long bars = (long) (hours * 1800);
+        int period = 1000;
+        long frame = 0;
+        for (long bar = 1; bar <= bars; bar++) {
+            long barFrame = bar * 2 * frameRate;
+            while (frame + period <= barFrame) {
+                frame += period;
+                cursor.advance(constant, frame);
+            }
+            cursor.advance(constant, barFrame);
+            frame = barFrame;
+            if (cursor.getBar() != bar + 1 || cursor.getBeat() != 1 || cursor.getTick() != 0) {
+                failures++;
+                if (failures <= 10) {
+                    System.out.println("FAIL bar line " + (bar + 1) + " at frame " + barFrame
+                            + " : " + cursor.getBar() + "|" + cursor.getBeat() + "|" + cursor.getTick());
+                }
+            }
+        }
+        System.out.println("Checked " + bars + " bar lines at 120bpm");
+    }
+
+    private void floatDrift(double hours) {
+        // what accumulating fractional ticks per period in floating point does
+        int period = 256;
+        double bpm = 133.333;
+        float ticksPerPeriod = (float) (period * TICKS_PER_BEAT * bpm / (60.0 * frameRate));
+        TempoMap constant = TempoMap.constant(frameRate, bpm, 4, 4);
+        TempoMap.Cursor cursor = new TempoMap.Cursor();
+        cursor.locate(constant, 0);
+        float ticks = 0;
+        long frame = 0;
+        long end = (long) (hours * 3600 * frameRate);
+        long worst = 0;
+        long worstFrame = 0;
+        while (frame < end) {
+            frame += period;
+            ticks += ticksPerPeriod;
+            cursor.advance(constant, frame);
+            long exact = cursor.getBarStartTick()
+                    + (cursor.getBeat() - 1) * TICKS_PER_BEAT + cursor.getTick();
+            long error = Math.abs((long) ticks - exact);
+            if (error > worst) {
+                worst = error;
+                worstFrame = frame;
+            }
+        }
+        System.out.println("Floating point accumulator over " + hours + " hours at " + bpm
+                + "bpm : up to " + worst + " ticks out (at " + worstFrame / frameRate
+                + "s), exact cursor : 0");
+    }
+
+    public static void main(String[] args) {
+        double hours = args.length > 0 ? Double.parseDouble(args[0]) : 12;
+        int frameRate = args.length > 1 ? Integer.parseInt(args[1]) : 48000;
+        TempoMapCheck check = new TempoMapCheck(frameRate);
+        System.out.println(check.map);
+        check.run(hours);
+        check.checkBarLines(hours * 10);
+        check.floatDrift(hours);
+        if (check.failures > 0) {
+            System.out.println(check.failures + " FAILURES");
+            System.exit(1);
+        }
+        System.out.println("OK - no drift");
+    }
+
+}
@@ -0,0 +1,163 @@
+package org.jaudiolibs.examples;
+
+import org.jaudiolibs.pipes.graph.Property;
+import org.jaudiolibs.pipes.units.Osc;
+
+/**
+ * A fixed size pool of synth voices for a Pipes Graph, each an {@link Osc}
+ * with an envelope {@link Property}.
+ *
+ * Voices are created and linked once in Graph.init() and passed in here.
+ * {@link #next()} then hands out voices without allocation - a silent voice if
+ * there is one, otherwise one stolen from a playing note. The cost of finding
+ * a voice is a scan of the pool, so per period cost is bounded by the pool
+ * size whatever the note density.
+ */
+public final class VoicePool {
+
+    /**
+     * Policy for choosing a voice to steal when all voices are sounding.
+     */
+    public static enum Steal {
+        /**
+         * Steal the voice that was triggered longest ago.
+         */
+        OLDEST,
+        /**
+         * Steal the voice with the lowest envelope level.
+         */
+        QUIETEST
+    }
+
+    private final Voice[] voices;
+    private final Steal steal;
+    private final double silence;
+
+    private long triggerCount;
+    private int searchStart;
+
+    /**
+     * Create a voice pool. The arrays must be the same length, and each osc
+     * must already be linked into the graph with its gain driven by the
+     * matching envelope.
+     *
+     * @param steal stealing policy
+     * @param silence envelope level below which a voice is free
+     * @param oscs voice oscillators
+     * @param envs voice envelopes
+     */
+    public VoicePool(Steal steal, double silence, Osc[] oscs, Property[] envs) {
+        if (oscs.length != envs.length || oscs.length == 0) {
+            throw new IllegalArgumentException("Need the same number of oscillators and envelopes");
+        }
+        if (steal == null) {
+            throw new NullPointerException();
+        }
+        this.steal = steal;
+        this.silence = silence;
+        voices = new Voice[oscs.length];
+        for (int i = 0; i < voices.length; i++) {
+            voices[i] = new Voice(i, oscs[i], envs[i]);
+        }
+    }
+
+    /**
+     * Get a voice for a new note. The caller should set the oscillator and
+     * trigger the envelope.
+     *
+     * @return voice
+     */
+    public Voice next() {
+        int count = voices.length;
+        Voice voice = null;
+        // free voices are searched round robin so releases are spread out
+        for (int i = 0; i < count; i++) {
+            Voice v = voices[(searchStart + i) % count];
+            if (v.env.get() < silence) {
+                voice = v;
+                break;
+            }
+        }
+        if (voice == null) {
+            voice = steal == Steal.OLDEST ? findOldest() : findQuietest();
+        }
+        searchStart = (voice.index + 1) % count;
+        voice.triggered = ++triggerCount;
+        return voice;
+    }
+
+    private Voice findOldest() {
+        Voice oldest = voices[0];
+        for (int i = 1; i < voices.length; i++) {
+            if (voices[i].triggered < oldest.triggered) {
+                oldest = voices[i];
+            }
+        }
+        return oldest;
+    }
+
+    private Voice findQuietest() {
+        Voice quietest = voices[0];
+        double level = Math.abs(quietest.env.get());
+        for (int i = 1; i < voices.length; i++) {
+            double l = Math.abs(voices[i].env.get());
+            if (l < level) {
+                quietest = voices[i];
+                level = l;
+            }
+        }
+        return quietest;
+    }
+
+    /**
+     * Number of voices in the pool.
+     *
+     * @return size
+     */
+    public int size() {
+        return voices.length;
+    }
+
+    /**
+     * Number of voices with an envelope level at or above the silence
+     * threshold.
+     *
+     * @return active voice count
+     */
+    public int activeCount() {
+        int active = 0;
+        for (Voice v : voices) {
+            if (v.env.get() >= silence) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * A voice from the pool.
+     */
+    public static final class Voice {
+
+        private final int index;
+        private final Osc osc;
+        private final Property env;
+        private long triggered;
+
+        private Voice(int index, Osc osc, Property env) {
+            this.index = index;
+            this.osc = osc;
+            this.env = env;
+        }
+
+        public Osc osc() {
+            return osc;
+        }
+
+        public Property env() {
+            return env;
+        }
+
+    }
+
+}
@@ -0,0 +1,377 @@
+package org.jaudiolibs.examples;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiolibs.audioservers.AudioClient;
+import org.jaudiolibs.audioservers.AudioConfiguration;
+import org.jaudiolibs.audioservers.AudioServer;
+import org.jaudiolibs.audioservers.AudioServerProvider;
+import org.jaudiolibs.audioservers.ext.ClientID;
+import org.jaudiolibs.audioservers.ext.Connections;
+import org.jaudiolibs.pipes.graph.Graph;
+import org.jaudiolibs.pipes.graph.GraphPlayer;
+
+/**
+ * Warms up the JIT compiler before a client goes live, so the first seconds on
+ * the device don't run interpreted code and drop out.
+ *
+ * As an AudioClient, WarmUp wraps another client. After configuring it, the
+ * wrapped client's process() is called with dummy buffers until the JIT has
+ * settled, or the maximum number of periods or {@link #MAX_MILLIS} is reached.
+ * The JIT is considered settled once enough periods have run for HotSpot's C2
+ * thresholds, and there has been no compilation for the last
+ * {@link #SETTLE_PERIODS} periods and {@link #SETTLE_MILLIS}, as compilation
+ * happens in the background and is only counted when complete. Only then
+ * does configure() return and the server start calling process() for real.
+ * Output from the warm-up is discarded, but the client's state carries on from
+ * where warm-up left it. If the client returns false during warm-up,
+ * configure() fails.
+ *
+ * A GraphPlayer creates its own client, so a Graph is warmed up with
+ * {@link #graph(Supplier, float, int, int)}, running a separate instance of the
+ * same Graph class on the {@link OfflineAudioServer}. Compiled code is shared
+ * by all instances of a class, so the live Graph benefits.
+ *
+ * Usage : WarmUp [sine|passthrough|graph] [max periods]
+ */
+public class WarmUp implements AudioClient {
+
+    public static void main(String[] args) throws Exception {
+
+        String example = args.length > 0 ? args[0] : "sine";
+        int maxPeriods = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_PERIODS;
+
+        if ("graph".equals(example)) {
+            Report report = graph(SimpleGraph::new, 44100, 256, maxPeriods);
+            System.out.println(report);
+            GraphPlayer.create(new SimpleGraph())
+                    .build()
+                    .start();
+            return;
+        }
+
+        String lib = "JavaSound"; // or "JACK";
+
+        AudioServerProvider provider = DeviceDiscovery.provider(lib);
+
+        AudioClient client;
+        int inputs;
+        if ("passthrough".equals(example)) {
+            client = new PassThroughAudioClient();
+            inputs = 2;
+        } else {
+            client = new SineAudioClient();
+            inputs = 0;
+        }
+        WarmUp warmUp = new WarmUp(client, maxPeriods);
+
+        AudioConfiguration config = new AudioConfiguration(
+                44100.0f, //sample rate
+                inputs, // input channels
+                2, // output channels
+                256, //buffer size
+                // extensions
+                new ClientID("WarmUp"),
+                Connections.ALL);
+
+        final AudioServer server = provider.createServer(config, warmUp);
+
+        Thread runner = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.run();
+                } catch (Exception ex) {
+                    Logger.getLogger(WarmUp.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        });
+        runner.setPriority(Thread.MAX_PRIORITY);
+        // warm-up runs on this thread as part of configure
+        runner.start();
+
+    }
+
+    /**
+     * Number of periods without any JIT compilation for warm-up to be
+     * considered settled.
+     */
+    public final static int SETTLE_PERIODS = 2000;
+
+    /**
+     * Time without any JIT compilation for warm-up to be considered settled.
+     */
+    public final static long SETTLE_MILLIS = 20;
+
+    /**
+     * Maximum time for warm-up, whatever the number of periods.
+     */
+    public final static long MAX_MILLIS = 5000;
+
+    private final static int DEFAULT_MAX_PERIODS = 100000;
+    // above the C2 invocation and loop thresholds for process()
+    private final static int MIN_PERIODS = 15000;
+
+    private final static Logger LOG = Logger.getLogger(WarmUp.class.getName());
+
+    private final AudioClient client;
+    private final int maxPeriods;
+
+    private volatile Report report;
+
+    /**
+     * Wrap a client with the default maximum of 100000 periods.
+     *
+     * @param client client to warm up
+     */
+    public WarmUp(AudioClient client) {
+        this(client, DEFAULT_MAX_PERIODS);
+    }
+
+    /**
+     * Wrap a client.
+     *
+     * @param client client to warm up
+     * @param maxPeriods maximum number of periods to run
+     */
+    public WarmUp(AudioClient client, int maxPeriods) {
+        if (client == null) {
+            throw new NullPointerException();
+        }
+        if (maxPeriods < 0) {
+            throw new IllegalArgumentException("Invalid period count : " + maxPeriods);
+        }
+        this.client = client;
+        this.maxPeriods = maxPeriods;
+    }
+
+    public void configure(AudioConfiguration context) throws Exception {
+        client.configure(context);
+        int nframes = context.getMaxBufferSize();
+        List<FloatBuffer> inputs = createBuffers(context.getInputChannelCount(), nframes, true);
+        List<FloatBuffer> outputs = createBuffers(context.getOutputChannelCount(), nframes, false);
+        long periodNanos = (long) (nframes * 1e9 / context.getSampleRate());
+        boolean[] stopped = new boolean[1];
+        report = run(() -> {
+            // rewind as a server would, for clients using relative get and put
+            for (FloatBuffer buffer : inputs) {
+                buffer.clear();
+            }
+            for (FloatBuffer buffer : outputs) {
+                buffer.clear();
+            }
+            // warm-up runs faster than realtime, so use the clock rather than
+            // counting periods, or live time would appear to jump backwards
+            if (!client.process(System.nanoTime(), inputs, outputs, nframes)) {
+                stopped[0] = true;
+                return false;
+            }
+            return true;
+        }, maxPeriods, periodNanos);
+        LOG.log(Level.INFO, "{0} : {1}", new Object[]{client.getClass().getSimpleName(), report});
+        if (stopped[0]) {
+            throw new IllegalStateException("Client stopped during warm-up");
+        }
+    }
+
+    public boolean process(long time, List<FloatBuffer> inputs, List<FloatBuffer> outputs, int nframes) {
+        return client.process(time, inputs, outputs, nframes);
+    }
+
+    public void shutdown() {
+        client.shutdown();
+    }
+
+    /**
+     * Result of the last warm-up, or null if not yet configured.
+     *
+     * @return report
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    /**
+     * Warm up a Graph class by running a throwaway instance on the offline
+     * server, on the calling thread.
+     *
+     * @param graph supplier of new instances of the Graph
+     * @param sampleRate sample rate
+     * @param bufferSize buffer size
+     * @param maxPeriods maximum number of periods to run
+     * @return report
+     * @throws Exception if the offline server fails to start
+     */
+    public static Report graph(Supplier<? extends Graph> graph, float sampleRate,
+            int bufferSize, int maxPeriods) throws Exception {
+        OfflineAudioServer.Driver driver = new OfflineAudioServer.Driver();
+        GraphPlayer player = GraphPlayer.create(graph.get())
+                .library(OfflineAudioServerProvider.LIBRARY_NAME)
+                .sampleRate(sampleRate)
+                .bufferSize(bufferSize)
+                .ext(driver)
+                .build();
+        player.start();
+        try {
+            if (!driver.awaitReady(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Offline server did not start");
+            }
+            long periodNanos = (long) (bufferSize * 1e9 / sampleRate);
+            Report result = run(driver::step, maxPeriods, periodNanos);
+            LOG.log(Level.INFO, "Graph : {0}", result);
+            return result;
+        } finally {
+            driver.shutdown();
+        }
+    }
+
+    private static Report run(Step step, int maxPeriods, long periodNanos) throws Exception {
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean monitored = jit != null && jit.isCompilationTimeMonitoringSupported();
+        long startCompile = monitored ? jit.getTotalCompilationTime() : 0;
+        long lastCompile = startCompile;
+        int quiet = 0;
+        int periods = 0;
+        long firstNanos = 0;
+        long lastNanos = 0;
+        boolean settled = false;
+        long start = System.nanoTime();
+        long lastChange = start;
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(MAX_MILLIS);
+        while (periods < maxPeriods && System.nanoTime() < deadline) {
+            long t0 = System.nanoTime();
+            boolean more = step.step();
+            long t1 = System.nanoTime();
+            periods++;
+            if (periods == 1) {
+                firstNanos = t1 - t0;
+            }
+            lastNanos = t1 - t0;
+            if (!more) {
+                break;
+            }
+            if (monitored && (periods % 100) == 0) {
+                // compilation time is in milliseconds, so check in batches
+                long compile = jit.getTotalCompilationTime();
+                if (compile == lastCompile) {
+                    quiet += 100;
+                } else {
+                    quiet = 0;
+                    lastChange = t1;
+                }
+                lastCompile = compile;
+                if (periods >= MIN_PERIODS && quiet >= SETTLE_PERIODS
+                        && t1 - lastChange >= TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS)) {
+                    settled = true;
+                    break;
+                }
+            }
+        }
+        return new Report(periods, System.nanoTime() - start, lastCompile - startCompile,
+                settled, firstNanos, lastNanos, periodNanos);
+    }
+
+    private static List<FloatBuffer> createBuffers(int count, int nframes, boolean noise) {
+        // low level noise so inputs exercise the same code paths as real audio
+        Random random = new Random(0);
+        List<FloatBuffer> buffers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            FloatBuffer buffer = FloatBuffer.allocate(nframes);
+            if (noise) {
+                for (int f = 0; f < nframes; f++) {
+                    buffer.put(f, (random.nextFloat() - 0.5f) * 0.01f);
+                }
+            }
+            buffers.add(buffer);
+        }
+        return buffers;
+    }
+
+    private static interface Step {
+
+        boolean step() throws Exception;
+
+    }
+
+    /**
+     * The outcome of a warm-up.
+     */
+    public static final class Report {
+
+        private final int periods;
+        private final long nanos;
+        private final long compileMillis;
+        private final boolean settled;
+        private final long firstPeriodNanos;
+        private final long lastPeriodNanos;
+        private final long periodNanos;
+
+        private Report(int periods, long nanos, long compileMillis, boolean settled,
+                long firstPeriodNanos, long lastPeriodNanos, long periodNanos) {
+            this.periods = periods;
+            this.nanos = nanos;
+            this.compileMillis = compileMillis;
+            this.settled = settled;
+            this.firstPeriodNanos = firstPeriodNanos;
+            this.lastPeriodNanos = lastPeriodNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        public int getPeriods() {
+            return periods;
+        }
+
+        /**
+         * Wall clock time of the warm-up.
+         *
+         * @return nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * JIT compilation time during the warm-up, across all compiler
+         * threads, or zero if not supported.
+         *
+         * @return milliseconds
+         */
+        public long getCompileMillis() {
+            return compileMillis;
+        }
+
+        /**
+         * Whether compilation settled before the maximum number of periods.
+         *
+         * @return settled
+         */
+        public boolean isSettled() {
+            return settled;
+        }
+
+        public long getFirstPeriodNanos() {
+            return firstPeriodNanos;
+        }
+
+        public long getLastPeriodNanos() {
+            return lastPeriodNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("warm-up %s after %d periods (%.1fs of audio) in %.1f ms, "
+                    + "JIT %d ms, first period %.1f us, last %.1f us",
+                    settled ? "settled" : "stopped", periods, periods * periodNanos / 1e9,
+                    nanos / 1e6, compileMillis, firstPeriodNanos / 1000.0, lastPeriodNanos / 1000.0);
+        }
+
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.jaudiolibs.examples;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Minimal support for reading and writing RIFF WAVE headers.
+ *
+ * Audio data is written by the caller straight to the FileChannel after the
+ * header. Once writing is complete, {@link #finish(FileChannel, long)} patches
+ * the RIFF and data chunk sizes. {@link #readHeader(FileChannel)} finds the
+ * format and the location of the data in an existing file, for the caller to
+ * read or map.
+ */
+final class WavFile {
+
+    /**
+     * Size in bytes of the header written by this class.
+     */
+    final static int HEADER_SIZE = 44;
+
+    private final static short FORMAT_PCM = 1;
+    private final static short FORMAT_FLOAT = 3;
+    private final static int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private WavFile() {
+    }
+
+    /**
+     * Write a header for the given format at the start of the channel, and
+     * leave the channel positioned at the start of the data chunk.
+     *
+     * @param channel file channel to write to
+     * @param channels number of interleaved channels
+     * @param sampleRate sample rate
+     * @param bitsPerSample 16, 24 or 32
+     * @param floatingPoint true for IEEE float data (requires 32 bits)
+     * @throws IOException
+     */
+    static void writeHeader(FileChannel channel, int channels, int sampleRate,
+            int bitsPerSample, boolean floatingPoint) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int blockAlign = channels * (bitsPerSample / 8);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt(0); // patched in finish()
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+        header.put(new byte[]{'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort(floatingPoint ? FORMAT_FLOAT : FORMAT_PCM);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) bitsPerSample);
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt(0); // patched in finish()
+        header.flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Patch the chunk sizes in a header previously written by
+     * {@link #writeHeader(FileChannel, int, int, int, boolean)}.
+     *
+     * @param channel file channel
+     * @param dataBytes number of bytes of audio data written after the header
+     * @throws IOException
+     */
+    static void finish(FileChannel channel, long dataBytes) throws IOException {
+        ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        // WAV can't represent more than 4GB - clamp rather than wrap
+        size.putInt(0, (int) Math.min(0xFFFFFFFFL, dataBytes + HEADER_SIZE - 8));
+        channel.write(size, 4);
+        size.clear();
+        size.putInt(0, (int) Math.min(0xFFFFFFFFL, dataBytes));
+        channel.write(size, 40);
+    }
+
+    /**
+     * Read the header of an existing file. Only PCM and float formats that
+     * match a {@link SampleFormat} are supported. A data chunk size of zero or
+     * larger than the file, as left by an unfinished recording, is taken to
+     * mean the rest of the file.
+     *
+     * @param channel file channel to read from
+     * @return header
+     * @throws IOException if the file cannot be read or is not supported
+     */
+    static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        read(channel, buf, 0, 12);
+        if (buf.getInt(0) != 0x46464952 || buf.getInt(8) != 0x45564157) {
+            throw new IOException("Not a RIFF WAVE file");
+        }
+        long pos = 12;
+        int formatTag = -1;
+        int channels = 0;
+        int sampleRate = 0;
+        int bits = 0;
+        while (pos + 8 <= channel.size()) {
+            read(channel, buf, pos, 8);
+            int id = buf.getInt(0);
+            long size = buf.getInt(4) & 0xFFFFFFFFL;
+            if (id == 0x20746d66) { // "fmt "
+                read(channel, buf, pos + 8, (int) Math.min(size, 40));
+                formatTag = buf.getShort(0) & 0xFFFF;
+                channels = buf.getShort(2) & 0xFFFF;
+                sampleRate = buf.getInt(4);
+                bits = buf.getShort(14) & 0xFFFF;
+                if (formatTag == FORMAT_EXTENSIBLE && size >= 26) {
+                    // first two bytes of the sub format GUID
+                    formatTag = buf.getShort(24) & 0xFFFF;
+                }
+            } else if (id == 0x61746164) { // "data"
+                if (formatTag < 0) {
+                    throw new IOException("No format chunk before data");
+                }
+                long offset = pos + 8;
+                long available = channel.size() - offset;
+                long length = size == 0 || size > available ? available : size;
+                return new Header(channels, sampleRate, format(formatTag, bits), offset, length);
+            }
+            pos += 8 + size + (size & 1);
+        }
+        throw new IOException("No data chunk");
+    }
+
+    private static SampleFormat format(int formatTag, int bits) throws IOException {
+        if (formatTag == FORMAT_PCM) {
+            switch (bits) {
+                case 16:
+                    return SampleFormat.PCM_16;
+                case 24:
+                    return SampleFormat.PCM_24;
+                case 32:
+                    return SampleFormat.PCM_32;
+            }
+        } else if (formatTag == FORMAT_FLOAT && bits == 32) {
+            return SampleFormat.FLOAT_32;
+        }
+        throw new IOException("Unsupported format " + formatTag + " with " + bits + " bits");
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buf, long position, int length)
+            throws IOException {
+        buf.clear().limit(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Format and data location read from a file header.
+     */
+    static final class Header {
+
+        final int channels;
+        final int sampleRate;
+        final SampleFormat format;
+        final long dataOffset;
+        final long dataLength;
+
+        private Header(int channels, int sampleRate, SampleFormat format,
+                long dataOffset, long dataLength) {
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+            this.format = format;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+
+    }
+
+}
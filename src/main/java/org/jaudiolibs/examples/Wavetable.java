@@ -0,0 +1,154 @@
+package org.jaudiolibs.examples;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A set of band-limited single cycle tables for a waveform, built by additive
+ * synthesis.
+ *
+ * Tables are mip-mapped by harmonic count - each level holds half the
+ * harmonics of the one before, from {@link #SIZE} / 2 down to a single sine.
+ * An oscillator selects the level with the most harmonics that stay below
+ * Nyquist for its phase increment, so the same tables work at any sample rate
+ * and can be shared by any number of {@link WavetableOscillator}s. Tables are
+ * immutable once created.
+ */
+public final class Wavetable {
+
+    /**
+     * Number of samples in one cycle of each table.
+     */
+    public final static int SIZE = 2048;
+
+    /**
+     * Extra samples around each table - one before and three after the cycle
+     * - so that interpolation never needs to wrap indexes, even if rounding
+     * leaves the phase at exactly 1.
+     */
+    final static int GUARD = 4;
+
+    private final static int MAX_HARMONICS = SIZE / 2;
+    private final static int LEVELS = Integer.numberOfTrailingZeros(MAX_HARMONICS) + 1;
+
+    private final float[][] levels;
+
+    private Wavetable(float[][] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Find the table to use for the given phase increment.
+     *
+     * @param increment phase increment in cycles per sample
+     * @return table of length SIZE + GUARD, where index 1 is the start of the
+     * cycle
+     */
+    float[] select(double increment) {
+        double limit = 0.5 / Math.abs(increment);
+        int level = 0;
+        while (level < LEVELS - 1 && (MAX_HARMONICS >> level) > limit) {
+            level++;
+        }
+        return levels[level];
+    }
+
+    /**
+     * Shared sine table.
+     *
+     * @return sine wavetable
+     */
+    public static Wavetable sine() {
+        return Sine.TABLE;
+    }
+
+    /**
+     * Shared band-limited sawtooth table.
+     *
+     * @return saw wavetable
+     */
+    public static Wavetable saw() {
+        return Saw.TABLE;
+    }
+
+    /**
+     * Shared band-limited square table.
+     *
+     * @return square wavetable
+     */
+    public static Wavetable square() {
+        return Square.TABLE;
+    }
+
+    /**
+     * Create a wavetable from harmonic amplitudes. The function is called with
+     * harmonic numbers from 1 to SIZE / 2 and should return the amplitude of
+     * the sine partial at that harmonic, or 0.
+     *
+     * This is relatively expensive - share the result rather than creating
+     * tables per oscillator.
+     *
+     * @param amplitudes harmonic amplitude function
+     * @return wavetable
+     */
+    public static Wavetable fromHarmonics(IntToDoubleFunction amplitudes) {
+        double[] amps = new double[MAX_HARMONICS + 1];
+        int highest = 0;
+        for (int h = 1; h <= MAX_HARMONICS; h++) {
+            amps[h] = amplitudes.applyAsDouble(h);
+            if (amps[h] != 0) {
+                highest = h;
+            }
+        }
+        float[][] levels = new float[LEVELS][];
+        for (int level = 0; level < LEVELS; level++) {
+            int harmonics = Math.min(highest, MAX_HARMONICS >> level);
+            if (level > 0 && harmonics == Math.min(highest, MAX_HARMONICS >> (level - 1))) {
+                // no partials removed at this level - share the previous table
+                levels[level] = levels[level - 1];
+            } else {
+                levels[level] = render(amps, harmonics);
+            }
+        }
+        return new Wavetable(levels);
+    }
+
+    private static float[] render(double[] amps, int harmonics) {
+        double[] cycle = new double[SIZE];
+        for (int h = 1; h <= harmonics; h++) {
+            double amp = amps[h];
+            if (amp == 0) {
+                continue;
+            }
+            for (int i = 0; i < SIZE; i++) {
+                // reduce index modulo SIZE to keep the argument small and exact
+                cycle[i] += amp * Math.sin(2 * Math.PI * ((long) i * h % SIZE) / SIZE);
+            }
+        }
+        float[] table = new float[SIZE + GUARD];
+        for (int i = 0; i < SIZE + GUARD; i++) {
+            table[i] = (float) cycle[(i - 1 + SIZE) % SIZE];
+        }
+        return table;
+    }
+
+    private static class Sine {
+
+        private final static Wavetable TABLE = fromHarmonics(h -> h == 1 ? 1 : 0);
+
+    }
+
+    private static class Saw {
+
+        private final static Wavetable TABLE = fromHarmonics(
+                h -> ((h & 1) == 1 ? 2 : -2) / (Math.PI * h));
+
+    }
+
+    private static class Square {
+
+        private final static Wavetable TABLE = fromHarmonics(
+                h -> (h & 1) == 1 ? 4 / (Math.PI * h) : 0);
+
+    }
+
+}
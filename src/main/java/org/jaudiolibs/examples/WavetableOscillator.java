@@ -0,0 +1,217 @@
+package org.jaudiolibs.examples;
+
+/**
+ * An oscillator reading from a shared {@link Wavetable} with a fractional phase
+ * accumulator, so any frequency can be played exactly.
+ *
+ * The oscillator itself holds only its phase and settings - the table memory
+ * is shared - so it is cheap to run hundreds per period. Processing does not
+ * allocate. Instances are not thread safe.
+ */
+public class WavetableOscillator {
+
+    /**
+     * Interpolation between table samples.
+     */
+    public static enum Interpolation {
+        /**
+         * Linear interpolation - cheapest.
+         */
+        LINEAR,
+        /**
+         * Four point cubic Hermite interpolation - lower noise floor for low
+         * frequencies.
+         */
+        CUBIC
+    }
+
+    private Wavetable wavetable;
+    private Interpolation interpolation;
+    private float sampleRate;
+    private double frequency;
+    private double increment;
+    private double phase;
+    private float gain;
+    private float[] table;
+
+    /**
+     * Create an oscillator using the given wavetable, linear interpolation, a
+     * frequency of 440Hz and gain of 1.
+     *
+     * @param wavetable shared wavetable
+     */
+    public WavetableOscillator(Wavetable wavetable) {
+        if (wavetable == null) {
+            throw new NullPointerException();
+        }
+        this.wavetable = wavetable;
+        this.interpolation = Interpolation.LINEAR;
+        this.sampleRate = 48000;
+        this.frequency = 440;
+        this.gain = 1;
+        update();
+    }
+
+    public WavetableOscillator setWavetable(Wavetable wavetable) {
+        if (wavetable == null) {
+            throw new NullPointerException();
+        }
+        this.wavetable = wavetable;
+        update();
+        return this;
+    }
+
+    public Wavetable getWavetable() {
+        return wavetable;
+    }
+
+    public WavetableOscillator setInterpolation(Interpolation interpolation) {
+        if (interpolation == null) {
+            throw new NullPointerException();
+        }
+        this.interpolation = interpolation;
+        return this;
+    }
+
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    public WavetableOscillator setSampleRate(float sampleRate) {
+        if (!(sampleRate > 0)) {
+            throw new IllegalArgumentException("Invalid sample rate : " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        update();
+        return this;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Set the frequency in Hz. Negative frequencies run the phase backwards.
+     * Does not allocate and may be called between any two process calls.
+     *
+     * @param frequency frequency in Hz
+     * @return this
+     */
+    public WavetableOscillator setFrequency(double frequency) {
+        this.frequency = frequency;
+        update();
+        return this;
+    }
+
+    public double getFrequency() {
+        return frequency;
+    }
+
+    public WavetableOscillator setGain(float gain) {
+        this.gain = gain;
+        return this;
+    }
+
+    public float getGain() {
+        return gain;
+    }
+
+    /**
+     * Set the current phase, in cycles.
+     *
+     * @param phase phase, wrapped into the range 0..1
+     * @return this
+     */
+    public WavetableOscillator setPhase(double phase) {
+        this.phase = phase - Math.floor(phase);
+        return this;
+    }
+
+    public double getPhase() {
+        return phase;
+    }
+
+    private void update() {
+        increment = frequency / sampleRate;
+        table = wavetable.select(increment);
+    }
+
+    /**
+     * Write the next samples into the buffer, replacing its contents.
+     *
+     * @param buffer output
+     * @param offset offset into buffer
+     * @param length number of samples
+     */
+    public void process(float[] buffer, int offset, int length) {
+        if (interpolation == Interpolation.CUBIC) {
+            processCubic(buffer, offset, length, false);
+        } else {
+            processLinear(buffer, offset, length, false);
+        }
+    }
+
+    /**
+     * Add the next samples to the buffer - for mixing many oscillators into
+     * one output.
+     *
+     * @param buffer output
+     * @param offset offset into buffer
+     * @param length number of samples
+     */
+    public void processAdd(float[] buffer, int offset, int length) {
+        if (interpolation == Interpolation.CUBIC) {
+            processCubic(buffer, offset, length, true);
+        } else {
+            processLinear(buffer, offset, length, true);
+        }
+    }
+
+    private void processLinear(float[] buffer, int offset, int length, boolean add) {
+        final float[] t = table;
+        final double inc = increment;
+        final float g = gain;
+        double ph = phase;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            double pos = ph * Wavetable.SIZE;
+            int idx = (int) pos;
+            float frac = (float) (pos - idx);
+            float a = t[idx + 1];
+            float b = t[idx + 2];
+            float out = g * (a + frac * (b - a));
+            buffer[i] = add ? buffer[i] + out : out;
+            ph += inc;
+            if (ph >= 1 || ph < 0) {
+                ph -= Math.floor(ph);
+            }
+        }
+        phase = ph;
+    }
+
+    private void processCubic(float[] buffer, int offset, int length, boolean add) {
+        final float[] t = table;
+        final double inc = increment;
+        final float g = gain;
+        double ph = phase;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            double pos = ph * Wavetable.SIZE;
+            int idx = (int) pos;
+            float frac = (float) (pos - idx);
+            float y0 = t[idx];
+            float y1 = t[idx + 1];
+            float y2 = t[idx + 2];
+            float y3 = t[idx + 3];
+            float c1 = 0.5f * (y2 - y0);
+            float c2 = y0 - 2.5f * y1 + 2 * y2 - 0.5f * y3;
+            float c3 = 0.5f * (y3 - y0) + 1.5f * (y1 - y2);
+            float out = g * (((c3 * frac + c2) * frac + c1) * frac + y1);
+            buffer[i] = add ? buffer[i] + out : out;
+            ph += inc;
+            if (ph >= 1 || ph < 0) {
+                ph -= Math.floor(ph);
+            }
+        }
+        phase = ph;
+    }
+
+}